@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import models.nodes.AstNode;
+import models.symbol_table.Frame;
+import stages.Interpreter;
+import stages.Lexer;
+import stages.Parser;
+import stages.Resolver;
+
+/*
+ * Single operations on variables, so that nothing is constant folded.
+ * Run with the gc profiler to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArithmeticBenchmark {
+    private static final String SOURCE = """
+            (setq a 12)
+            (setq b 30)
+            (setq x 1.5)
+            (setq y 2.25)
+            (plus a b)
+            (times x y)
+            (divide b a)
+            (less a b)
+            (greatereq x a)
+            """;
+
+    private Interpreter interpreter;
+    private AstNode intPlus;
+    private AstNode realTimes;
+    private AstNode intDivide;
+    private AstNode intLess;
+    private AstNode mixedCompare;
+
+    @Setup
+    public void setup() throws Exception {
+        Lexer lexer = new Lexer(SOURCE);
+        lexer.parseTokens();
+
+        Parser parser = new Parser(lexer.getTokens());
+        AstNode ast = parser.parseAst();
+        String[] globals = new Resolver().resolve(ast);
+
+        interpreter = new Interpreter(new Frame(parser.getGlobalScope(), globals), false);
+        ast.accept(interpreter);
+
+        List<AstNode> forms = ast.getChildren();
+        intPlus = forms.get(4);
+        realTimes = forms.get(5);
+        intDivide = forms.get(6);
+        intLess = forms.get(7);
+        mixedCompare = forms.get(8);
+    }
+
+    @Benchmark
+    public Object intPlus() {
+        return intPlus.accept(interpreter);
+    }
+
+    @Benchmark
+    public Object realTimes() {
+        return realTimes.accept(interpreter);
+    }
+
+    @Benchmark
+    public Object intDivide() {
+        return intDivide.accept(interpreter);
+    }
+
+    @Benchmark
+    public Object intLess() {
+        return intLess.accept(interpreter);
+    }
+
+    @Benchmark
+    public Object mixedCompare() {
+        return mixedCompare.accept(interpreter);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import models.nodes.AstNode;
+import models.symbol_table.Frame;
+import models.symbol_table.SymbolTable;
+import stages.BytecodeCompiler;
+import stages.ClosureCompiler;
+import stages.Evaluator;
+import stages.Interpreter;
+import stages.Lexer;
+import stages.Parser;
+import stages.Resolver;
+import stages.Semanter;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// deep non tail recursion of the tree walker needs more than the default thread stack
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class InterpreterBenchmark {
+    @Param({"RECURSION", "WHILE", "QUOTED_LIST", "EVAL", "FORMS"})
+    public Programs.Kind kind;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"interpreter", "closure"})
+    public String engine;
+
+    @Param({"false", "true"})
+    public boolean jit;
+
+    private AstNode ast;
+    private Evaluator compiled;
+    private SymbolTable globalScope;
+    private String[] globals;
+
+    @Setup
+    public void setup() throws Exception {
+        Lexer lexer = new Lexer(Programs.generate(kind, size));
+        lexer.parseTokens();
+
+        Parser parser = new Parser(lexer.getTokens());
+        ast = parser.parseAst();
+
+        Semanter semanter = new Semanter(null);
+        semanter.validate(ast);
+        ast = semanter.optimize(ast);
+
+        globals = new Resolver().resolve(ast);
+        globalScope = parser.getGlobalScope();
+
+        if (jit) {
+            new BytecodeCompiler().compileFunctions(ast);
+        }
+
+        // compiled once per trial, the same way Main does it before running a file
+        compiled = engine.equals("closure") ? new ClosureCompiler().compileProgram(ast, false) : null;
+    }
+
+    @Benchmark
+    public Object interpret() {
+        Frame frame = new Frame(globalScope, globals);
+        if (compiled != null) {
+            return compiled.eval(frame);
+        }
+        // a non global interpreter does not print the results of the top level forms
+        return ast.accept(new Interpreter(frame, false));
+    }
+}
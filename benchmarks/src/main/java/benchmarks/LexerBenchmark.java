@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import models.token.Token;
+import stages.Lexer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    @Param({"QUOTED_LIST", "FORMS"})
+    public Programs.Kind kind;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Programs.generate(kind, size);
+    }
+
+    @Benchmark
+    public ArrayList<Token> parseTokens() throws Exception {
+        Lexer lexer = new Lexer(source);
+        lexer.parseTokens();
+        return lexer.getTokens();
+    }
+
+    @Benchmark
+    public int streamTokens() throws Exception {
+        // pulls tokens one by one the way the parser does with --stream, without collecting them
+        Lexer lexer = new Lexer(new StringReader(source));
+        int count = 0;
+        while (lexer.nextToken() != null) {
+            count++;
+        }
+        return count;
+    }
+}
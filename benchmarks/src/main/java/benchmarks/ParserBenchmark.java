@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import models.nodes.AstNode;
+import models.token.Token;
+import stages.Lexer;
+import stages.Parser;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"QUOTED_LIST", "FORMS"})
+    public Programs.Kind kind;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ArrayList<Token> tokens;
+
+    @Setup
+    public void setup() throws Exception {
+        Lexer lexer = new Lexer(Programs.generate(kind, size));
+        lexer.parseTokens();
+        tokens = lexer.getTokens();
+    }
+
+    @Benchmark
+    public AstNode parseAst() throws Exception {
+        return new Parser(tokens).parseAst();
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+/*
+ * Generators for the F programs the benchmarks run. Every program scales with the given size
+ * and produces no output when interpreted outside of the global scope.
+ */
+public final class Programs {
+    public enum Kind {
+        RECURSION,
+        WHILE,
+        QUOTED_LIST,
+        EVAL,
+        FORMS
+    }
+
+    private static final int MAX_NESTED_DEPTH = 1000;
+
+    private Programs() {
+    }
+
+    public static String generate(Kind kind, int size) {
+        return switch (kind) {
+            case RECURSION -> recursion(size);
+            case WHILE -> whileLoop(size);
+            case QUOTED_LIST -> quotedList(size);
+            case EVAL -> evalLoop(size);
+            case FORMS -> forms(size);
+        };
+    }
+
+    private static String recursion(int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(func count_down (num acc)\n")
+                .append("    (cond (equal num 0) acc (count_down (minus num 1) (plus acc 1)))\n")
+                .append(")\n")
+                .append("(func depth (num)\n")
+                .append("    (cond (equal num 0) 0 (plus 1 (depth (minus num 1))))\n")
+                .append(")\n")
+                .append("(count_down ").append(size).append(" 0)\n")
+                .append("(depth ").append(Math.min(size, MAX_NESTED_DEPTH)).append(")\n");
+        return sb.toString();
+    }
+
+    private static String whileLoop(int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(setq i 0)\n")
+                .append("(setq acc 0)\n")
+                .append("(while (less i ").append(size).append(")\n")
+                .append("    (setq acc (plus acc (times i 2)))\n")
+                .append("    (setq i (plus i 1))\n")
+                .append(")\n")
+                .append("acc\n");
+        return sb.toString();
+    }
+
+    private static String quotedList(int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(setq data '(");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(i);
+        }
+        sb.append("))\n")
+                .append("(setq rest data)\n")
+                .append("(setq i 1)\n")
+                .append("(while (less i ").append(size).append(")\n")
+                .append("    (setq rest (tail rest))\n")
+                .append("    (setq i (plus i 1))\n")
+                .append(")\n")
+                .append("(head rest)\n");
+        return sb.toString();
+    }
+
+    private static String evalLoop(int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(setq expr '(plus (times 2 3) (minus 10 4)))\n")
+                .append("(setq result null)\n")
+                .append("(setq i 0)\n")
+                .append("(while (less i ").append(size).append(")\n")
+                .append("    (setq result (eval expr))\n")
+                .append("    (setq i (plus i 1))\n")
+                .append(")\n")
+                .append("result\n");
+        return sb.toString();
+    }
+
+    private static String forms(int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(setq k 2.5)\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("(func f_").append(i).append(" (x) (plus x ").append(i).append("))\n")
+                    .append("(f_").append(i).append(" (times k ").append(i).append("))\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import models.nodes.AstNode;
+import models.token.Token;
+import stages.Lexer;
+import stages.Parser;
+import stages.Semanter;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SemanterBenchmark {
+    @Param({"RECURSION", "QUOTED_LIST", "FORMS"})
+    public Programs.Kind kind;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ArrayList<Token> tokens;
+    private AstNode ast;
+
+    @Setup(Level.Trial)
+    public void lex() throws Exception {
+        Lexer lexer = new Lexer(Programs.generate(kind, size));
+        lexer.parseTokens();
+        tokens = lexer.getTokens();
+    }
+
+    // optimize rewrites the tree in place, so every invocation gets a fresh one
+    @Setup(Level.Invocation)
+    public void parse() throws Exception {
+        ast = new Parser(tokens).parseAst();
+    }
+
+    @Benchmark
+    public AstNode validateAndOptimize() throws Exception {
+        Semanter semanter = new Semanter(null);
+        semanter.validate(ast);
+        return semanter.optimize(ast);
+    }
+}
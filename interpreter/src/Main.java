@@ -1,11 +1,36 @@
 import models.nodes.AstNode;
+import models.nodes.FunctionNode;
+import models.symbol_table.Frame;
 import models.token.Token;
+import stages.BytecodeCompiler;
+import stages.ClosureCompiler;
 import stages.Interpreter;
 import stages.Lexer;
+import stages.MemoCache;
 import stages.Parser;
+import stages.Resolver;
+import stages.ResultSink;
 import stages.Semanter;
+import stages.Session;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
@@ -16,48 +41,301 @@ public class Main {
     private static final String RED = "\u001B[31m";
 
     public static void main(String[] args) {
-        for (int i = 0; i < args.length; i++) {
+        String engine = "interpreter";
+        boolean jit = false;
+        boolean stream = false;
+        boolean incremental = false;
+        boolean verbose = false;
+        String repl = null;
+        int jobs = 1;
+        ArrayList<String> files = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.equals("--jit")) {
+                jit = true;
+            } else if (arg.equals("--stream")) {
+                stream = true;
+            } else if (arg.equals("--incremental")) {
+                incremental = true;
+            } else if (arg.equals("--verbose")) {
+                verbose = true;
+            } else if (arg.equals("--jobs")) {
+                jobs = Runtime.getRuntime().availableProcessors();
+            } else if (arg.startsWith("--jobs=")) {
+                String count = arg.substring("--jobs=".length());
+                try {
+                    jobs = Integer.parseInt(count);
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs < 1) {
+                    System.out.println(RED + "Invalid job count " + count + ", expected a positive number" + RESET);
+                    return;
+                }
+            } else if (arg.equals("--repl") || arg.startsWith("--repl=")) {
+                repl = arg.substring("--repl".length());
+            } else {
+                files.add(arg);
+            }
+        }
+
+        if (!engine.equals("interpreter") && !engine.equals("closure")) {
+            System.out.println(RED + "Unknown engine " + engine + ", expected interpreter or closure" + RESET);
+            return;
+        }
+
+        if (repl != null) {
+            // files given along with --repl are loaded into the session before it starts taking input
+            Session session = new Session(engine.equals("closure"), jit, verbose ? System.out : null);
+            for (String file : files) {
+                try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(file)))) {
+                    session.eval(reader, ResultSink.printing(System.err));
+                } catch (Exception e) {
+                    System.out.println(RED + "Error while processing file " + file + ": " + e + RESET);
+                }
+            }
+
             try {
-                String content = new String(Files.readAllBytes(Paths.get(args[i])));
+                if (repl.isEmpty()) {
+                    repl(session, new BufferedReader(new InputStreamReader(System.in)), System.out, true);
+                } else {
+                    serve(session, Integer.parseInt(repl.substring(1)));
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.out.println(RED + "REPL error: " + e + RESET);
+            }
+            return;
+        }
+
+        Options options = new Options(engine.equals("closure"), jit, stream, incremental, verbose);
+        if (jobs > 1) {
+            runParallel(files, options, jobs);
+        } else {
+            ResultSink results = ResultSink.buffered(System.err);
+            for (String file : files) {
+                processFile(file, options, System.out, results);
+            }
+        }
+    }
+
+    private record Options(boolean closures, boolean jit, boolean stream, boolean incremental, boolean verbose) {
+    }
 
-                System.out.println(BOLD_YELLOW + "Processing file: " + args[i] + RESET);
-                Lexer lexer = new Lexer(content);
+    /* What one file writes to standard output and standard error, kept in the order it was written */
+    private static final class Transcript {
+        private record Chunk(boolean error, ByteArrayOutputStream bytes) {
+        }
+
+        private final ArrayList<Chunk> chunks = new ArrayList<>();
+
+        OutputStream stream(boolean error) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    if (chunks.isEmpty() || chunks.getLast().error() != error) {
+                        chunks.add(new Chunk(error, new ByteArrayOutputStream()));
+                    }
+                    chunks.getLast().bytes().write(b, off, len);
+                }
+            };
+        }
+
+        void replay() {
+            for (Chunk chunk : chunks) {
+                PrintStream target = chunk.error() ? System.err : System.out;
+                target.writeBytes(chunk.bytes().toByteArray());
+                target.flush();
+            }
+        }
+    }
+
+    /*
+     * Runs the whole pipeline for one file. Program results go to results, errors to out;
+     * the token and tree dumps and the optimization logs are only written to out in verbose mode.
+     */
+    private static void processFile(String file, Options options, PrintStream out, ResultSink results) {
+        boolean verbose = options.verbose();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(file)))) {
+            if (verbose) out.println(BOLD_YELLOW + "Processing file: " + file + RESET);
+
+            if (options.incremental()) {
+                if (verbose) out.println("\nInterpreting result:");
+                new Session(options.closures(), options.jit(), verbose ? out : null).eval(reader, results);
+                return;
+            }
+
+            Lexer lexer = new Lexer(reader);
+            Parser parser;
+
+            if (options.stream() || !verbose) {
+                // the parser pulls tokens as it needs them, nothing is collected up front
+                parser = new Parser(lexer);
+            } else {
                 lexer.parseTokens();
                 ArrayList<Token> tokens = lexer.getTokens();
 
-                System.out.println("\nTokenization result:");
-                writeTokens(tokens, args[i]);
+                out.println("\nTokenization result:");
+                writeTokens(out, tokens, file);
+
+                parser = new Parser(tokens);
+            }
+
+            AstNode ast = parser.parseAst();
+            Semanter semanter = new Semanter(verbose ? out : null);
+            if (verbose) {
+                out.println("\nParsing result:");
+                printAst(out, ast, "", true);
+                out.println("\nOptimization logs:");
+            }
+
+            semanter.validate(ast);
+            ast = semanter.optimize(ast);
+
+            if (verbose) {
+                out.println("\nTree after optimization:");
+                printAst(out, ast, "", true);
+            }
+
+            String[] globals = new Resolver().resolve(ast);
+
+            if (options.jit()) {
+                if (verbose) out.println("\nBytecode compilation:");
+                for (String name : new BytecodeCompiler().compileFunctions(ast)) {
+                    if (verbose) out.println("Compiled function " + name);
+                }
+            }
+
+            Frame globalFrame = new Frame(parser.getGlobalScope(), globals);
+            if (verbose) out.println("\nInterpreting result:");
+            if (options.closures()) {
+                new ClosureCompiler(results).compileProgram(ast, true).eval(globalFrame);
+            } else {
+                ast.accept(new Interpreter(globalFrame, true, results));
+            }
+
+            if (verbose) {
+                results.flush();
+                printMemoStats(out, ast);
+            }
+        } catch (Exception e) {
+            // the results of the forms that ran come first
+            results.flush();
+            out.println(RED + "Error while processing file " + file + ": " + e + RESET);
+        } finally {
+            results.flush();
+        }
+    }
+
+    /* Processes the files on a pool of workers; each file's output is buffered and written in the order of the files */
+    private static void runParallel(List<String> files, Options options, int jobs) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            ArrayList<Future<Transcript>> outputs = new ArrayList<>();
+            for (String file : files) {
+                outputs.add(pool.submit(() -> {
+                    Transcript transcript = new Transcript();
+                    try (PrintStream outStream = new PrintStream(transcript.stream(false), false, System.out.charset());
+                         PrintStream errStream = new PrintStream(transcript.stream(true), false, System.err.charset())) {
+                        processFile(file, options, outStream, ResultSink.printing(errStream));
+                    }
+                    return transcript;
+                }));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    outputs.get(i).get().replay();
+                } catch (ExecutionException e) {
+                    System.out.println(RED + "Error while processing file " + files.get(i) + ": " + e.getCause() + RESET);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* Reads chunks of source and evaluates each one once its parentheses are balanced */
+    private static void repl(Session session, BufferedReader in, PrintStream out, boolean interactive) throws IOException {
+        StringBuilder chunk = new StringBuilder();
+        int depth = 0;
+
+        if (interactive) out.print("> ");
+        out.flush();
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            chunk.append(line).append('\n');
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '(') depth++;
+                else if (line.charAt(i) == ')') depth--;
+            }
+
+            if (depth > 0 || chunk.toString().isBlank()) {
+                if (interactive) out.print(depth > 0 ? "... " : "> ");
+                out.flush();
+                continue;
+            }
 
-                Parser parser = new Parser(tokens);
-                AstNode ast = parser.parseAst();
-                System.out.println("\nParsing result:");
-                printAst(ast, "", true);
+            try {
+                session.eval(new StringReader(chunk.toString()), ResultSink.printing(out));
+            } catch (Exception | StackOverflowError e) {
+                out.println(interactive ? RED + "Error: " + e + RESET : "Error: " + e);
+            }
+            chunk.setLength(0);
+            depth = 0;
 
-                System.out.println("\nOptimization logs:");
-                Semanter semanter = new Semanter();
-                semanter.validate(ast);
-                ast = semanter.optimize(ast);
+            // over a socket an empty line marks the end of the response
+            if (interactive) out.print("> ");
+            else out.println();
+            out.flush();
+        }
+    }
 
-                System.out.println("\nTree after optimization:");
-                printAst(ast, "", true);
+    private static void serve(Session session, int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + server.getLocalSocketAddress());
 
-                Interpreter interpreter = new Interpreter(parser.getGlobalScope(), true);
-                System.out.println("\nInterpreting result:");
-                ast.accept(interpreter);
-            } catch (Exception e) {
-                System.out.println(RED + "Error while processing file " + args[i] + ": " + e + RESET);
+            while (true) {
+                Socket client = server.accept();
+                Thread handler = new Thread(() -> {
+                    try (client;
+                         BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+                         PrintStream out = new PrintStream(new BufferedOutputStream(client.getOutputStream()))) {
+                        repl(session, in, out, false);
+                    } catch (IOException e) {
+                        System.out.println(RED + "Connection error: " + e + RESET);
+                    }
+                });
+                handler.setDaemon(true);
+                handler.start();
             }
         }
     }
 
-    private static void writeTokens(ArrayList<Token> tokens, String fileName) {
-        System.out.println("The parsing result for file " + fileName + " is:");
+    private static void printMemoStats(PrintStream out, AstNode ast) {
+        ArrayList<FunctionNode> memoized = new ArrayList<>();
+        MemoCache.collect(ast, memoized);
+        MemoCache.printStats(out, memoized);
+    }
+
+    private static void writeTokens(PrintStream out, ArrayList<Token> tokens, String fileName) {
+        out.println("The parsing result for file " + fileName + " is:");
         int prevLine = -1;
         StringBuilder lineBuilder = new StringBuilder();
 
         for (Token token : tokens) {
             if (token.getLine() != prevLine && prevLine != -1) {
-                System.out.println(lineBuilder.toString().trim());
+                out.println(lineBuilder.toString().trim());
                 lineBuilder.setLength(0);
             }
 
@@ -70,18 +348,18 @@ public class Main {
         }
 
         if (lineBuilder.length() > 0) {
-            System.out.println(lineBuilder.toString().trim());
+            out.println(lineBuilder.toString().trim());
         }
     }
 
-    private static void printAst(AstNode node, String prefix, boolean isTail) {
+    private static void printAst(PrintStream out, AstNode node, String prefix, boolean isTail) {
         if (node == null) return;
 
-        System.out.println(prefix + (isTail ? "└── " : "├── ") + CYAN + node.toString() + RESET);
+        out.println(prefix + (isTail ? "└── " : "├── ") + CYAN + node.toString() + RESET);
 
         var children = node.getChildren();
         for (int i = 0; i < children.size(); i++) {
-            printAst(children.get(i), prefix + (isTail ? "    " : "│   "), i == children.size() - 1);
+            printAst(out, children.get(i), prefix + (isTail ? "    " : "│   "), i == children.size() - 1);
         }
     }
 }
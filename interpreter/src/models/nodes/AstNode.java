@@ -31,6 +31,11 @@ public abstract class AstNode {
         return "AstNode()";
     }
 
+    /* Subclasses that keep their operands in fields as well update them here */
+    public void replaceChild(int index, AstNode child) {
+        children.set(index, child);
+    }
+
     public ArrayList<AstNode> getChildren() {
         return children;
     }
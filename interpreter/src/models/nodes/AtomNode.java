@@ -9,11 +9,13 @@ import stages.Interpreter;
 public class AtomNode extends AstNode {
     private String value;
     private TokenType type;
+    private int slot;
 
     public AtomNode(Token token) {
         super(NodeType.ATOM, null, new ArrayList<>());
         this.value = token.getValue();
         this.type = token.getType();
+        this.slot = -1;
     }
 
     @Override
@@ -29,6 +31,14 @@ public class AtomNode extends AstNode {
         return this.value;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     @Override
     public String toString() {
         return "AtomNode(" + value + ")";
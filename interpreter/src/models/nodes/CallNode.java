@@ -4,8 +4,9 @@ import stages.Interpreter;
 import java.util.ArrayList;
 
 public class CallNode extends AstNode {
-	private final AstNode callee;
+	private AstNode callee;
 	private final ArrayList<AstNode> arguments;
+	private FunctionNode tailCallOf;
 
 	public CallNode(AstNode callee, ArrayList<AstNode> arguments) {
 		super(NodeType.CALL, null, new ArrayList<>());
@@ -23,6 +24,24 @@ public class CallNode extends AstNode {
 		return arguments;
 	}
 
+	public FunctionNode getTailCallOf() {
+		return tailCallOf;
+	}
+
+	public void setTailCallOf(FunctionNode tailCallOf) {
+		this.tailCallOf = tailCallOf;
+	}
+
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		if (index == 0) {
+			callee = child;
+		} else {
+			arguments.set(index - 1, child);
+		}
+	}
+
 	@Override
 	public Object accept(Interpreter interpreter) {
 		return interpreter.visitCallNode(this);
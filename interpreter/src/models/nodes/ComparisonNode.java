@@ -22,6 +22,13 @@ public class ComparisonNode extends AstNode {
 		addChild(rightElement);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		if (index == 0) leftElement = child;
+		else rightElement = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitComparisonNode(this);
@@ -5,9 +5,9 @@ import stages.Interpreter;
 
 
 public class CondNode extends AstNode {
-	private final AstNode condition;
-	private final AstNode action;
-	private final AstNode defaultAction;
+	private AstNode condition;
+	private AstNode action;
+	private AstNode defaultAction;
 
 	public CondNode(AstNode condition, AstNode action, AstNode defaultAction) {
 		super(NodeType.COND, null, new ArrayList<>());
@@ -19,6 +19,16 @@ public class CondNode extends AstNode {
 		if (defaultAction != null) addChild(defaultAction);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		switch (index) {
+			case 0 -> condition = child;
+			case 1 -> action = child;
+			default -> defaultAction = child;
+		}
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitCondNode(this);
@@ -4,8 +4,8 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class ConsNode extends AstNode {
-	private final AstNode item;
-	private final AstNode list;
+	private AstNode item;
+	private AstNode list;
 
 	public ConsNode(AstNode item, AstNode list) {
 		super(NodeType.CONS, null, new ArrayList<>());
@@ -15,6 +15,13 @@ public class ConsNode extends AstNode {
 		addChild(list);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		if (index == 0) item = child;
+		else list = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitConsNode(this);
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class EvalNode extends AstNode {
-	private final AstNode expr;
+	private AstNode expr;
 
 	public EvalNode(AstNode expr) {
 		super(NodeType.EVAL, null, new ArrayList<>());
@@ -12,6 +12,12 @@ public class EvalNode extends AstNode {
 		addChild(expr);
 	}
 	
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		expr = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitEvalNode(this);
@@ -1,12 +1,19 @@
 package models.nodes;
 
 import java.util.ArrayList;
+import stages.Evaluator;
 import stages.Interpreter;
+import stages.MemoCache;
+import stages.NumericFunction;
 
 public class FunctionNode extends AstNode {
     String functionName;
 	ArrayList<String> parameters;
 	AstNode body;
+	String[] frameLayout;
+	Evaluator compiledBody;
+	NumericFunction numericFunction;
+	MemoCache memoCache;
 
     public FunctionNode(String functionName, ArrayList<String> parameters, AstNode body) {
 		super(NodeType.FUNC, null, new ArrayList<>());
@@ -32,6 +39,39 @@ public class FunctionNode extends AstNode {
 		return body;
 	}
 
+	public String[] getFrameLayout() {
+		return frameLayout;
+	}
+
+	public void setFrameLayout(String[] frameLayout) {
+		this.frameLayout = frameLayout;
+	}
+
+	public Evaluator getCompiledBody() {
+		return compiledBody;
+	}
+
+	public void setCompiledBody(Evaluator compiledBody) {
+		this.compiledBody = compiledBody;
+	}
+
+	public NumericFunction getNumericFunction() {
+		return numericFunction;
+	}
+
+	public void setNumericFunction(NumericFunction numericFunction) {
+		this.numericFunction = numericFunction;
+	}
+
+	/* null unless the function was declared with memo */
+	public MemoCache getMemoCache() {
+		return memoCache;
+	}
+
+	public void setMemoCache(MemoCache memoCache) {
+		this.memoCache = memoCache;
+	}
+
 	@Override
     public String toString() {
 		String stringParams = String.join(",", parameters);
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class HeadNode extends AstNode {
-	private final AstNode listExpr;
+	private AstNode listExpr;
 
 	public HeadNode(AstNode listExpr) {
 		super(NodeType.HEAD, null, new ArrayList<>());
@@ -12,6 +12,12 @@ public class HeadNode extends AstNode {
 		addChild(listExpr);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		listExpr = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitHeadNode(this);
@@ -1,12 +1,15 @@
 package models.nodes;
 
 import java.util.ArrayList;
+import stages.Evaluator;
 import stages.Interpreter;
 
 public class LambdaNode extends AstNode {
     ArrayList<String> parameters;
     AstNode body;
     ArrayList<AstNode> arguments;
+    String[] frameLayout;
+    Evaluator compiledBody;
 
     public LambdaNode(ArrayList<String> parameters, AstNode body) {
         super(NodeType.LAMBDA, null, new ArrayList<>());
@@ -23,6 +26,10 @@ public class LambdaNode extends AstNode {
         return body;
     }
 
+    public void setBody(AstNode body) {
+        this.body = body;
+    }
+
     public ArrayList<AstNode> getArguments() {
         return arguments;
     }
@@ -31,6 +38,22 @@ public class LambdaNode extends AstNode {
         this.arguments = arguments;
     }
 
+    public String[] getFrameLayout() {
+        return frameLayout;
+    }
+
+    public void setFrameLayout(String[] frameLayout) {
+        this.frameLayout = frameLayout;
+    }
+
+    public Evaluator getCompiledBody() {
+        return compiledBody;
+    }
+
+    public void setCompiledBody(Evaluator compiledBody) {
+        this.compiledBody = compiledBody;
+    }
+
     @Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitLambdaNode(this);
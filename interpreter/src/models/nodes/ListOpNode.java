@@ -0,0 +1,60 @@
+package models.nodes;
+
+import stages.Interpreter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListOpNode extends AstNode {
+	private final String operation; // "map"|"filter"|"foldl"|"length"|"nth"|"append"|"reverse"|"pmap"|"preduce"
+	private Object parallelFunction;
+
+	public ListOpNode(String operation, ArrayList<AstNode> arguments) {
+		super(NodeType.LISTOP, null, new ArrayList<>());
+		this.operation = operation;
+		for (AstNode arg : arguments) addChild(arg);
+	}
+
+	/* Number of arguments the operation takes */
+	public static int arity(String operation) {
+		return switch (operation) {
+			case "length", "reverse" -> 1;
+			case "foldl", "preduce" -> 3;
+			default -> 2;
+		};
+	}
+
+	/* map, filter, foldl, pmap and preduce take the function to apply as their first argument */
+	public static boolean takesFunction(String operation) {
+		return switch (operation) {
+			case "map", "filter", "foldl", "pmap", "preduce" -> true;
+			default -> false;
+		};
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public List<AstNode> getArguments() {
+		return getChildren();
+	}
+
+	/* Whether function is the value the semantic check found safe to call from several threads at once */
+	public boolean runsInParallel(Object function) {
+		return parallelFunction != null && parallelFunction.equals(function);
+	}
+
+	public void setParallelFunction(Object parallelFunction) {
+		this.parallelFunction = parallelFunction;
+	}
+
+	@Override
+	public Object accept(Interpreter interpreter) {
+		return interpreter.visitListOpNode(this);
+	}
+
+	@Override
+	public String toString() {
+		return "ListOpNode(" + operation + ":" + getChildren() + ")";
+	}
+}
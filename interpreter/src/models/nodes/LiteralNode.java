@@ -7,19 +7,58 @@ import models.token.TokenType;
 import stages.Interpreter;
 
 public class LiteralNode extends AstNode {
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1023;
+    private static final Integer[] SMALL_INTS = new Integer[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+
+    static {
+        for (int i = 0; i < SMALL_INTS.length; i++) {
+            SMALL_INTS[i] = SMALL_INT_MIN + i;
+        }
+    }
+
     private String value;
     private TokenType type;
+    private Object runtimeValue;
 
     public LiteralNode(Token token) {
-        super(NodeType.LITERAL, null, new ArrayList<>());
-        this.value = token.getValue();
-        this.type = token.getType();
+        this(token.getValue(), token.getType());
     }
 
     public LiteralNode(String value, TokenType type) {
         super(NodeType.LITERAL, null, new ArrayList<>());
         this.value = value;
         this.type = type;
+        this.runtimeValue = parse(value);
+    }
+
+    /* The text is turned into its runtime value once, here, instead of on every evaluation */
+    private static Object parse(String value) {
+        switch (value) {
+            case "true" -> {
+                return Boolean.TRUE;
+            }
+            case "false" -> {
+                return Boolean.FALSE;
+            }
+            case "null" -> {
+                return null;
+            }
+        }
+
+        try {
+            if (value.contains(".")) {
+                return Double.parseDouble(value);
+            }
+            int parsed = Integer.parseInt(value);
+            if (parsed >= SMALL_INT_MIN && parsed <= SMALL_INT_MAX) {
+                return SMALL_INTS[parsed - SMALL_INT_MIN];
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            // anything that is not a number stays as written
+            return value;
+        }
     }
 
     @Override
@@ -35,6 +74,10 @@ public class LiteralNode extends AstNode {
         return type;
     }
 
+    public Object getRuntimeValue() {
+        return runtimeValue;
+    }
+
     @Override
     public String toString() {
         return "LiteralNode(" + value + ")";
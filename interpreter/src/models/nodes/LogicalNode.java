@@ -7,8 +7,8 @@ import stages.Interpreter;
 
 public class LogicalNode extends AstNode {
 	private final String operator; // "and" | "or" | "xor"
-	private final AstNode left;
-	private final AstNode right;
+	private AstNode left;
+	private AstNode right;
 
 	public LogicalNode(String operator, AstNode left, AstNode right) {
 		super(NodeType.LOGICALOP, null, new ArrayList<>(List.of(left, right)));
@@ -19,6 +19,14 @@ public class LogicalNode extends AstNode {
 		addChild(right);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		// the operands are in the children twice, the engines read the first pair
+		if (index == 0) left = child;
+		else if (index == 1) right = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitLogicalNode(this);
@@ -15,6 +15,7 @@ public enum NodeType {
 	LAMBDA,
 	LAMBDACALL,
 	LIST,
+	LISTOP,
 	LITERAL,
 	LOGICALOP,
 	NOT,
@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class NotNode extends AstNode {
-	private final AstNode argument;
+	private AstNode argument;
 
 	public NotNode(AstNode argument) {
 		super(NodeType.NOT, null, new ArrayList<>());
@@ -13,6 +13,12 @@ public class NotNode extends AstNode {
 		addChild(argument);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		argument = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitNotNode(this);
@@ -6,7 +6,7 @@ import stages.Interpreter;
 
 public class PredicateNode extends AstNode {
 	private final String predicate; // "isint"|"isreal"|"isbool"|"isnull"|"isatom"|"islist"
-	private final AstNode argument;
+	private AstNode argument;
 
 	public PredicateNode(String predicate, AstNode argument) {
 		super(NodeType.PREDICATE, null, new ArrayList<>());
@@ -15,6 +15,12 @@ public class PredicateNode extends AstNode {
 		addChild(argument);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		argument = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitPredicateNode(this);
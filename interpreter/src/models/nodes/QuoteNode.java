@@ -6,6 +6,8 @@ import stages.Interpreter;
 
 public class QuoteNode extends AstNode {
     private AstNode quotedExpr;
+	/* the data the quote stands for, built on first use */
+	private Object value;
 
 	public QuoteNode(AstNode quotedExpr) {
 		super(NodeType.QUOTE, null, new ArrayList<>());
@@ -21,6 +23,14 @@ public class QuoteNode extends AstNode {
 		return quotedExpr;
 	}
 
+	public Object getValue() {
+		return value;
+	}
+
+	public void setValue(Object value) {
+		this.value = value;
+	}
+
 	@Override
     public String toString() {
         return "QuoteNode(" + quotedExpr.toString() + ")";
@@ -2,10 +2,12 @@ package models.nodes;
 
 import java.util.ArrayList;
 
+import stages.Evaluator;
 import stages.Interpreter;
 
 public class ReturnNode extends AstNode {
-	private final AstNode value;
+	private AstNode value;
+	private Evaluator compiledValue;
 
 	public ReturnNode(AstNode value) {
 		super(NodeType.RETURN, null, new ArrayList<>());
@@ -13,6 +15,12 @@ public class ReturnNode extends AstNode {
 		addChild(value);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		value = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitReturnNode(this);
@@ -20,6 +28,14 @@ public class ReturnNode extends AstNode {
 
 	public AstNode getValue() { return value; }
 
+	public Evaluator getCompiledValue() {
+		return compiledValue;
+	}
+
+	public void setCompiledValue(Evaluator compiledValue) {
+		this.compiledValue = compiledValue;
+	}
+
 	@Override
     public String toString() {
         return "ReturnNode(" + value.toString() + ")";
@@ -6,15 +6,23 @@ import stages.Interpreter;
 
 public class SetqNode extends AstNode {
 	private final String name;
-	private final AstNode value;
+	private AstNode value;
+	private int slot;
 
 	public SetqNode(String name, AstNode value) {
 		super(NodeType.SETQ, null, new ArrayList<>());
 		this.name = name;
 		this.value = value;
+		this.slot = -1;
 		addChild(value);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		value = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitSetqNode(this);
@@ -28,6 +36,14 @@ public class SetqNode extends AstNode {
 		return value;
 	}
 
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
 	@Override
     public String toString() {
         return "SetqNode(" + name.toString() + ":" + value.toString() + ")";
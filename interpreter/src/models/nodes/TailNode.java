@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class TailNode extends AstNode {
-	private final AstNode listExpr;
+	private AstNode listExpr;
 
 	public TailNode(AstNode listExpr) {
 		super(NodeType.TAIL, null, new ArrayList<>());
@@ -13,6 +13,12 @@ public class TailNode extends AstNode {
 		addChild(listExpr);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		listExpr = child;
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitTailNode(this);
@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import stages.Interpreter;
 
 public class WhileNode extends AstNode {
-	private final AstNode condition;
+	private AstNode condition;
 	private final ArrayList<AstNode> body;
 
 	public WhileNode(AstNode condition, ArrayList<AstNode> body) {
@@ -16,6 +16,16 @@ public class WhileNode extends AstNode {
 		for (AstNode b : body) addChild(b);
 	}
 
+	@Override
+	public void replaceChild(int index, AstNode child) {
+		super.replaceChild(index, child);
+		if (index == 0) {
+			condition = child;
+		} else {
+			body.set(index - 1, child);
+		}
+	}
+
 	@Override
     public Object accept(Interpreter interpreter) {
         return interpreter.visitWhileNode(this);
@@ -0,0 +1,84 @@
+package models.symbol_table;
+
+import models.nodes.*;
+
+import java.util.List;
+
+public class Frame extends SymbolTable {
+	private final String[] names;
+	private final AstNode[] slots;
+
+	public Frame(SymbolTable parent, String[] names) {
+		super(parent);
+		this.names = names;
+		this.slots = new AstNode[names.length];
+	}
+
+	/* Builds the table a function body runs in; without a layout the parameters go to a plain scope */
+	public static SymbolTable forCall(SymbolTable caller, String[] layout, List<String> paramNames, AstNode[] args) {
+		if (layout == null) {
+			SymbolTable table = new SymbolTable(caller);
+			for (int i = 0; i < args.length; i++) {
+				table.define(paramNames.get(i), args[i]);
+			}
+			return table;
+		}
+
+		// parameters occupy the first slots of the layout
+		Frame frame = new Frame(caller, layout);
+		for (int i = 0; i < args.length; i++) {
+			frame.set(i, args[i]);
+		}
+		return frame;
+	}
+
+	public AstNode lookup(int slot, String name) {
+		AstNode value = slots[slot];
+		if (value != null) {
+			return value;
+		}
+		// a local that has not been assigned yet is looked up in the enclosing scopes
+		return parent != null ? parent.find(name) : null;
+	}
+
+	public void set(int slot, AstNode value) {
+		slots[slot] = value;
+	}
+
+	@Override
+	public void define(String name, AstNode value) {
+		int slot = slotOf(name);
+		if (slot >= 0) {
+			slots[slot] = value;
+		} else {
+			super.define(name, value);
+		}
+	}
+
+	@Override
+	public AstNode find(String name) {
+		int slot = slotOf(name);
+		if (slot >= 0) {
+			return lookup(slot, name);
+		}
+		return super.find(name);
+	}
+
+	@Override
+	public boolean defined(String name) {
+		int slot = slotOf(name);
+		if (slot >= 0 && slots[slot] != null) {
+			return true;
+		}
+		return super.defined(name);
+	}
+
+	private int slotOf(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
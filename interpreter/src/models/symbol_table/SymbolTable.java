@@ -6,8 +6,11 @@ import java.util.Map;
 import java.util.HashMap;
 
 public class SymbolTable {
-    private SymbolTable parent;
+    protected SymbolTable parent;
     public Map<String, AstNode> symbols;
+    /* the return, break or tail call the closure engine produced last in this scope, see Interpreter.completion */
+    public Object completion = NOTHING;
+    private static final Object NOTHING = new Object();
 
     public SymbolTable(SymbolTable parent) {
 		this.parent = parent;
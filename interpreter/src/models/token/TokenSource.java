@@ -0,0 +1,6 @@
+package models.token;
+
+public interface TokenSource {
+    /* Returns the next token of the input, or null once there are no more */
+    Token nextToken() throws Exception;
+}
@@ -18,6 +18,7 @@ public enum TokenType {
     WHILE,
     RETURN,
     BREAK,
+    MEMO,
 
     // Arithmetic
     PLUS,
@@ -30,6 +31,17 @@ public enum TokenType {
     TAIL,
     CONS,
 
+    // Bulk list operations
+    MAP,
+    FILTER,
+    FOLDL,
+    LENGTH,
+    NTH,
+    APPEND,
+    REVERSE,
+    PMAP,
+    PREDUCE,
+
     // Comparisons
     EQUAL,
     NONEQUAL,
@@ -77,6 +89,7 @@ public enum TokenType {
         keywords.put("while", WHILE);
         keywords.put("return", RETURN);
         keywords.put("break", BREAK);
+        keywords.put("memo", MEMO);
 
         // arithmetic
         keywords.put("plus", PLUS);
@@ -88,6 +101,15 @@ public enum TokenType {
         keywords.put("head", HEAD);
         keywords.put("tail", TAIL);
         keywords.put("cons", CONS);
+        keywords.put("map", MAP);
+        keywords.put("filter", FILTER);
+        keywords.put("foldl", FOLDL);
+        keywords.put("length", LENGTH);
+        keywords.put("nth", NTH);
+        keywords.put("append", APPEND);
+        keywords.put("reverse", REVERSE);
+        keywords.put("pmap", PMAP);
+        keywords.put("preduce", PREDUCE);
 
         // comparisons
         keywords.put("equal", EQUAL);
@@ -0,0 +1,241 @@
+package models.values;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ * Immutable list value of the language. head, tail and cons are O(1) and share structure,
+ * while the java.util.List view keeps printing, islist and eval working on any list value.
+ * Lists made of only ints or only reals keep their numbers unboxed in one array, tails are views into it.
+ */
+public abstract class FList extends AbstractList<Object> {
+	public static final FList EMPTY = new Empty();
+
+	public abstract Object head();
+
+	public abstract FList tail();
+
+	public FList cons(Object item) {
+		return new Cons(item, this);
+	}
+
+	public static FList of(Object[] items) {
+		if (items.length == 0) {
+			return EMPTY;
+		}
+
+		Class<?> kind = items[0] == null ? null : items[0].getClass();
+		if (kind == Integer.class || kind == Double.class) {
+			boolean homogeneous = true;
+			for (Object item : items) {
+				if (item == null || item.getClass() != kind) {
+					homogeneous = false;
+					break;
+				}
+			}
+			if (homogeneous) {
+				return kind == Integer.class ? Ints.unbox(items) : Doubles.unbox(items);
+			}
+		}
+
+		FList result = EMPTY;
+		for (int i = items.length - 1; i >= 0; i--) {
+			result = result.cons(items[i]);
+		}
+		return result;
+	}
+
+	public static FList of(List<?> items) {
+		if (items instanceof FList list) {
+			return list;
+		}
+		return of(items.toArray());
+	}
+
+	@Override
+	public Object get(int index) {
+		checkIndex(index);
+
+		FList current = this;
+		for (int i = 0; i < index; i++) {
+			current = current.tail();
+		}
+		return current.head();
+	}
+
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		return new Iterator<>() {
+			private FList current = FList.this;
+
+			@Override
+			public boolean hasNext() {
+				return !current.isEmpty();
+			}
+
+			@Override
+			public Object next() {
+				if (current.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Object item = current.head();
+				current = current.tail();
+				return item;
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof List<?> other) || other.size() != size()) return false;
+
+		Iterator<?> it = other.iterator();
+		for (Object item : this) {
+			Object otherItem = it.next();
+			if (item == null ? otherItem != null : !item.equals(otherItem)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (Object item : this) {
+			hash = 31 * hash + (item == null ? 0 : item.hashCode());
+		}
+		return hash;
+	}
+
+	private static final class Empty extends FList {
+		@Override
+		public Object head() {
+			throw new NoSuchElementException("head of empty list");
+		}
+
+		@Override
+		public FList tail() {
+			throw new NoSuchElementException("tail of empty list");
+		}
+
+		@Override
+		public int size() {
+			return 0;
+		}
+	}
+
+	private static final class Ints extends FList {
+		private final int[] items;
+		private final int offset;
+
+		private Ints(int[] items, int offset) {
+			this.items = items;
+			this.offset = offset;
+		}
+
+		static FList unbox(Object[] boxed) {
+			int[] items = new int[boxed.length];
+			for (int i = 0; i < items.length; i++) {
+				items[i] = (Integer) boxed[i];
+			}
+			return new Ints(items, 0);
+		}
+
+		@Override
+		public Object head() {
+			return items[offset];
+		}
+
+		@Override
+		public FList tail() {
+			return offset + 1 == items.length ? EMPTY : new Ints(items, offset + 1);
+		}
+
+		@Override
+		public Object get(int index) {
+			checkIndex(index);
+			return items[offset + index];
+		}
+
+		@Override
+		public int size() {
+			return items.length - offset;
+		}
+	}
+
+	private static final class Doubles extends FList {
+		private final double[] items;
+		private final int offset;
+
+		private Doubles(double[] items, int offset) {
+			this.items = items;
+			this.offset = offset;
+		}
+
+		static FList unbox(Object[] boxed) {
+			double[] items = new double[boxed.length];
+			for (int i = 0; i < items.length; i++) {
+				items[i] = (Double) boxed[i];
+			}
+			return new Doubles(items, 0);
+		}
+
+		@Override
+		public Object head() {
+			return items[offset];
+		}
+
+		@Override
+		public FList tail() {
+			return offset + 1 == items.length ? EMPTY : new Doubles(items, offset + 1);
+		}
+
+		@Override
+		public Object get(int index) {
+			checkIndex(index);
+			return items[offset + index];
+		}
+
+		@Override
+		public int size() {
+			return items.length - offset;
+		}
+	}
+
+	private static final class Cons extends FList {
+		private final Object head;
+		private final FList tail;
+		private final int size;
+
+		private Cons(Object head, FList tail) {
+			this.head = head;
+			this.tail = tail;
+			this.size = tail.size() + 1;
+		}
+
+		@Override
+		public Object head() {
+			return head;
+		}
+
+		@Override
+		public FList tail() {
+			return tail;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
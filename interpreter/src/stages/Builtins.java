@@ -0,0 +1,441 @@
+package stages;
+
+import models.nodes.*;
+import models.token.TokenType;
+import models.values.FList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.DoubleStream;
+
+/*
+ * Value level semantics of the built-in forms, shared by the evaluation engines.
+ */
+final class Builtins {
+
+	private Builtins() {
+	}
+
+	static Number evalOperation(String operator, List<Object> operands) {
+		double[] numericOperands = new double[operands.size()];
+		for (int i = 0; i < numericOperands.length; i++) {
+			numericOperands[i] = ((Number) operands.get(i)).doubleValue();
+		}
+
+		switch (operator) {
+			case "plus" -> {
+				double result = DoubleStream.of(numericOperands).sum();
+
+				if (isInteger(result)) {
+					return (int) result;
+				} else {
+					return result;
+				}
+			}
+			case "minus" -> {
+				double result = numericOperands[0];
+				for (int i = 1; i < numericOperands.length; i++) {
+					result -= numericOperands[i];
+				}
+				if (isInteger(result)) {
+					return (int) result;
+				} else return result;
+			}
+			case "times" -> {
+				double result = 1.0;
+				for (double operand : numericOperands) {
+					result *= operand;
+				}
+				if (isInteger(result)) {
+					return (int) result;
+				} else return result;
+			}
+			case "divide" -> {
+				double result = numericOperands[0];
+				for (int i = 1; i < numericOperands.length; i++) {
+					double divisor = numericOperands[i];
+					if (divisor == 0) {
+						throw new RuntimeException("INTERPRETATION ERROR: DIVISION BY ZERO");
+					}
+					result /= divisor;
+				}
+				if (isInteger(result)) {
+					return (int) result;
+				} else return result;
+			}
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN OPERATOR " + operator);
+		}
+	}
+
+	static Number evalBinaryOperation(TokenType operator, Object left, Object right) {
+		return switch (operator) {
+			case PLUS -> plus(left, right);
+			case MINUS -> minus(left, right);
+			case TIMES -> times(left, right);
+			case DIVIDE -> divide(left, right);
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN OPERATOR " + operator);
+		};
+	}
+
+	static Number plus(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return narrow((long) l + r);
+		}
+		return narrow(((Number) left).doubleValue() + ((Number) right).doubleValue());
+	}
+
+	static Number minus(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return narrow((long) l - r);
+		}
+		return narrow(((Number) left).doubleValue() - ((Number) right).doubleValue());
+	}
+
+	static Number times(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return narrow((long) l * r);
+		}
+		return narrow(((Number) left).doubleValue() * ((Number) right).doubleValue());
+	}
+
+	static Number divide(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			long a = l;
+			long b = r;
+			if (b == 0) {
+				throw new RuntimeException("INTERPRETATION ERROR: DIVISION BY ZERO");
+			}
+			if (a % b == 0) {
+				return narrow(a / b);
+			}
+		}
+
+		double l = ((Number) left).doubleValue();
+		double r = ((Number) right).doubleValue();
+		if (r == 0) {
+			throw new RuntimeException("INTERPRETATION ERROR: DIVISION BY ZERO");
+		}
+		return narrow(l / r);
+	}
+
+	// same narrowing as the double based path: integral results saturate to the int range
+	static Number narrow(long value) {
+		if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+		if (value < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+		return (int) value;
+	}
+
+	static Number narrow(double value) {
+		if (isInteger(value)) {
+			return (int) value;
+		}
+		return value;
+	}
+
+	static boolean isInteger(double value) {
+		return value == Math.floor(value);
+	}
+
+	static Object evalBinaryComparison(TokenType comparison, Object left, Object right) {
+		return switch (comparison) {
+			case EQUAL -> equal(left, right);
+			case NONEQUAL -> nonEqual(left, right);
+			case LESS -> less(left, right);
+			case LESSEQ -> lessEq(left, right);
+			case GREATER -> greater(left, right);
+			case GREATEREQ -> greaterEq(left, right);
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN COMPARISON OPERATOR " + comparison);
+		};
+	}
+
+	static Object equal(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() == r.intValue();
+		}
+		return evalComparison("equal", left, right);
+	}
+
+	static Object nonEqual(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() != r.intValue();
+		}
+		return evalComparison("nonequal", left, right);
+	}
+
+	static Object less(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() < r.intValue();
+		}
+		return evalComparison("less", left, right);
+	}
+
+	static Object lessEq(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() <= r.intValue();
+		}
+		return evalComparison("lesseq", left, right);
+	}
+
+	static Object greater(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() > r.intValue();
+		}
+		return evalComparison("greater", left, right);
+	}
+
+	static Object greaterEq(Object left, Object right) {
+		if (left instanceof Integer l && right instanceof Integer r) {
+			return l.intValue() >= r.intValue();
+		}
+		return evalComparison("greatereq", left, right);
+	}
+
+	static Object evalComparison(String op, Object leftVal, Object rightVal) {
+		if (leftVal instanceof Boolean && rightVal instanceof Boolean) {
+			boolean l = (Boolean) leftVal;
+			boolean r = (Boolean) rightVal;
+			return switch (op) {
+				case "equal" -> l == r;
+				case "nonequal" -> l != r;
+				default -> throw new RuntimeException(
+						"INTERPRETATION ERROR: BOOLEAN COMPARISON ONLY SUPPORTS equal/nonequal, got " + op
+				);
+			};
+		}
+
+		double l = ((Number) leftVal).doubleValue();
+		double r = ((Number) rightVal).doubleValue();
+
+		return switch (op) {
+			case "equal" -> l == r;
+			case "nonequal" -> l != r;
+			case "less" -> l < r;
+			case "lesseq" -> l <= r;
+			case "greater" -> l > r;
+			case "greatereq" -> l >= r;
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN COMPARISON OPERATOR " + op);
+		};
+	}
+
+	static Object evalPredicate(String predicate, Object value) {
+		return switch (predicate) {
+			case "isint" -> value instanceof Integer;
+			case "isreal" -> value instanceof Double || value instanceof Integer;
+			case "isbool" -> value instanceof Boolean;
+			case "isnull" -> value == null;
+			case "islist" -> value instanceof java.util.List<?>;
+			default -> value != null;
+		};
+	}
+
+	static Object evalLogical(String operator, Object leftVal, Object rightVal) {
+		boolean l = asBoolean(leftVal, "LEFT");
+		boolean r = asBoolean(rightVal, "RIGHT");
+
+		return switch (operator) {
+			case "and" -> l && r;
+			case "or" -> l || r;
+			case "xor" -> (l || r) && !(l && r);
+			case "nor" -> !(l || r);
+			case "nand" -> !(l && r);
+			case "xnor" -> !((l || r) && !(l && r));
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN LOGICAL OPERATOR " + operator);
+		};
+	}
+
+	static Object evalNot(Object value) {
+		boolean v = asBoolean(value, "ARG");
+		return !v;
+	}
+
+	static boolean asBoolean(Object value, String side) {
+		if (value instanceof Boolean b) {
+			return b;
+		}
+		if (value instanceof Number n) {
+			return n.doubleValue() != 0.0;
+		}
+		if (value instanceof String s) {
+			if (s.equals("true") || s.equals("false")) {
+				return Boolean.parseBoolean(s);
+			}
+			if (s.equals("0")) return false;
+			if (s.equals("1")) return true;
+		}
+		throw new RuntimeException(
+				"INTERPRETATION ERROR: LOGICAL " + side + " OPERAND IS NOT BOOLEAN: " + value
+		);
+	}
+
+	static Object evalHead(Object value) {
+		if (!(value instanceof java.util.List<?> list)) {
+			throw new RuntimeException("INTERPRETATION ERROR: HEAD EXPECTED LIST");
+		}
+		if (list.isEmpty()) {
+			throw new RuntimeException("INTERPRETATION ERROR: EMPTY LIST");
+		}
+		if (list instanceof FList fList) {
+			return fList.head();
+		}
+		return list.get(0);
+	}
+
+	static Object evalTail(Object value) {
+		if (!(value instanceof java.util.List<?> list)) {
+			throw new RuntimeException("INTERPRETATION ERROR: TAIL EXPECTED LIST");
+		}
+		if (list.isEmpty()) {
+			throw new RuntimeException("INTERPRETATION ERROR: EMPTY LIST");
+		}
+		return FList.of(list).tail();
+	}
+
+	static Object evalCons(Object head, Object tailVal) {
+		if (tailVal instanceof java.util.List<?> tailList) {
+			return FList.of(tailList).cons(head);
+		} else if (tailVal != null) {
+			throw new RuntimeException("INTERPRETATION ERROR: CONS TAIL IS NOT A LIST");
+		}
+		return FList.EMPTY.cons(head);
+	}
+
+	/*
+	 * map, filter, foldl, length, nth, append and reverse on evaluated arguments. apply calls a function
+	 * or lambda value with the given arguments the way the engine calls them, operator names are applied here.
+	 * pmap and preduce end up here when they run sequentially, like map and foldl.
+	 */
+	static Object evalListOperation(String operation, Object[] args, BiFunction<Object, Object[], Object> apply) {
+		return switch (operation) {
+			case "map", "pmap" -> {
+				Function<Object[], Object> function = function(args[0], apply);
+				List<?> list = asList(operation, args[1]);
+				Object[] result = new Object[list.size()];
+				int i = 0;
+				for (Object item : list) {
+					result[i++] = function.apply(new Object[]{item});
+				}
+				yield FList.of(result);
+			}
+			case "filter" -> {
+				Function<Object[], Object> function = function(args[0], apply);
+				List<?> list = asList(operation, args[1]);
+				Object[] kept = new Object[list.size()];
+				int count = 0;
+				for (Object item : list) {
+					if (!(function.apply(new Object[]{item}) instanceof Boolean keep)) {
+						throw new RuntimeException("INTERPRETATION ERROR: FILTER PREDICATE IS NOT BOOLEAN");
+					}
+					if (keep) kept[count++] = item;
+				}
+				yield FList.of(Arrays.copyOf(kept, count));
+			}
+			case "foldl", "preduce" -> {
+				Function<Object[], Object> function = function(args[0], apply);
+				Object accumulator = args[1];
+				for (Object item : asList(operation, args[2])) {
+					accumulator = function.apply(new Object[]{accumulator, item});
+				}
+				yield accumulator;
+			}
+			case "length" -> asList(operation, args[0]).size();
+			case "nth" -> {
+				List<?> list = asList(operation, args[1]);
+				if (!(args[0] instanceof Integer index)) {
+					throw new RuntimeException("INTERPRETATION ERROR: NTH EXPECTED INTEGER INDEX");
+				}
+				if (index < 0 || index >= list.size()) {
+					throw new RuntimeException("INTERPRETATION ERROR: NTH INDEX OUT OF RANGE: " + index);
+				}
+				yield list.get(index);
+			}
+			case "append" -> {
+				Object[] front = asList(operation, args[0]).toArray();
+				FList result = FList.of(asList(operation, args[1]));
+				// the second list is shared, only the first one is copied
+				for (int i = front.length - 1; i >= 0; i--) {
+					result = result.cons(front[i]);
+				}
+				yield result;
+			}
+			case "reverse" -> {
+				Object[] items = asList(operation, args[0]).toArray();
+				for (int i = 0, j = items.length - 1; i < j; i++, j--) {
+					Object item = items[i];
+					items[i] = items[j];
+					items[j] = item;
+				}
+				yield FList.of(items);
+			}
+			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN LIST OPERATION " + operation);
+		};
+	}
+
+	static List<?> asList(String operation, Object value) {
+		if (!(value instanceof List<?> list)) {
+			throw new RuntimeException("INTERPRETATION ERROR: " + operation.toUpperCase() + " EXPECTED LIST");
+		}
+		return list;
+	}
+
+	/* Calling function once the operator names are resolved, so the loops do not look at them per item */
+	static Function<Object[], Object> function(Object function, BiFunction<Object, Object[], Object> apply) {
+		if (function instanceof String name && isOperatorName(name)) {
+			TokenType operator = TokenType.fromString(name);
+			return args -> args.length == 2
+					? evalBinaryOperation(operator, args[0], args[1])
+					: evalOperation(name, Arrays.asList(args));
+		}
+		return args -> apply.apply(function, args);
+	}
+
+	static boolean isOperatorName(String name) {
+		return switch (name) {
+			case "plus", "minus", "times", "divide" -> true;
+			default -> false;
+		};
+	}
+
+	/* Quoted data is immutable, so every evaluation of a quote can share one value; eval caches by its identity */
+	static Object evalQuote(QuoteNode quote) {
+		Object value = quote.getValue();
+		if (value == null) {
+			value = evalQuoted(quote.getQuotedExpr());
+			quote.setValue(value);
+		}
+		return value;
+	}
+
+	static Object evalQuoted(AstNode node) {
+		return evalQuoted(node, UnaryOperator.identity());
+	}
+
+	/* share is given every list that gets built, inner ones first, and returns the instance to use for it */
+	static Object evalQuoted(AstNode node, UnaryOperator<FList> share) {
+		switch (node) {
+			case ListNode listNode -> {
+				ArrayList<AstNode> elements = listNode.getElements();
+				Object[] result = new Object[elements.size()];
+				for (int i = 0; i < result.length; i++) {
+					result[i] = evalQuoted(elements.get(i), share);
+				}
+				return share.apply(FList.of(result));
+			}
+			case LiteralNode lit -> {
+				return lit.getRuntimeValue();
+			}
+			case AtomNode atom -> {
+				return atom.getValue();
+			}
+			case QuoteNode q -> {
+				return evalQuoted(q.getQuotedExpr(), share);
+			}
+			case null, default -> {
+				return node;
+			}
+		}
+	}
+}
@@ -0,0 +1,498 @@
+package stages;
+
+import models.nodes.*;
+import models.symbol_table.SymbolTable;
+import stages.ClassFileWriter.Code;
+import stages.ClassFileWriter.Label;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static stages.ClassFileWriter.*;
+
+/*
+ * Optional backend that compiles numeric functions into a hidden class with a static method over doubles.
+ * A function qualifies when its body only uses number and boolean literals, its parameters and locals,
+ * binary arithmetic, comparisons, cond, while, setq, prog with return and calls to itself.
+ * Locals must be assigned before they are read, so the compiled code never looks into the caller's scope.
+ *
+ * Numbers are kept as doubles and narrowed after every operation the way Builtins does it,
+ * so an integral value always stands for an Integer and the result can be boxed back exactly.
+ */
+public class BytecodeCompiler {
+	private static final String CLASS_NAME = "stages/CompiledFunction";
+	private static final String OWNER = "stages/BytecodeCompiler";
+	private static final int MAX_LOCAL_SLOTS = 255;
+
+	private enum Type { NUM, BOOL, NULL }
+
+	private record Local(int index, Type type) {
+	}
+
+	/* Raised for anything the backend does not handle; the function then stays interpreted */
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private Unsupported() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Unsupported UNSUPPORTED = new Unsupported();
+
+	private FunctionNode function;
+	private ClassFileWriter writer;
+	private Code code;
+	private Label start;
+	private Map<String, Local> locals;
+	private int nextLocal;
+	private int runMethod;
+
+	public List<String> compileFunctions(AstNode root) {
+		ArrayList<FunctionNode> functions = new ArrayList<>();
+		collectFunctions(root, functions);
+
+		ArrayList<String> compiled = new ArrayList<>();
+		for (FunctionNode fn : functions) {
+			// the compiled code calls itself directly, which would skip the memo cache
+			if (fn.getMemoCache() != null) continue;
+
+			NumericFunction numeric = compile(fn);
+			if (numeric != null) {
+				fn.setNumericFunction(numeric);
+				compiled.add(fn.getFunctionName());
+			}
+		}
+		return compiled;
+	}
+
+	public NumericFunction compile(FunctionNode fn) {
+		byte[] bytes;
+		try {
+			bytes = generate(fn);
+		} catch (Unsupported e) {
+			return null;
+		}
+
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			return (NumericFunction) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		} catch (Throwable e) {
+			throw new RuntimeException("BYTECODE ERROR: CANNOT LOAD FUNCTION " + fn.getFunctionName() + ": " + e);
+		}
+	}
+
+	/* Runs the compiled version of fn when there is one and every argument is a number, returns null otherwise */
+	static Object invoke(FunctionNode fn, Object[] args, SymbolTable caller) {
+		NumericFunction numeric = fn.getNumericFunction();
+		// self calls in the compiled code assume the name still refers to this function
+		if (numeric == null || caller.find(fn.getFunctionName()) != fn) {
+			return null;
+		}
+
+		double[] values = new double[args.length];
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] instanceof Integer n) {
+				values[i] = n;
+			} else if (args[i] instanceof Double d && !Builtins.isInteger(d)) {
+				values[i] = d;
+			} else {
+				return null;
+			}
+		}
+
+		return Builtins.narrow(numeric.apply(values));
+	}
+
+	static double narrow(double value) {
+		return Builtins.isInteger(value) ? (int) value : value;
+	}
+
+	static double divide(double left, double right) {
+		if (right == 0) {
+			throw new RuntimeException("INTERPRETATION ERROR: DIVISION BY ZERO");
+		}
+		return narrow(left / right);
+	}
+
+	private void collectFunctions(AstNode node, List<FunctionNode> functions) {
+		if (node == null) return;
+
+		switch (node) {
+			case FunctionNode fn -> {
+				functions.add(fn);
+				collectFunctions(fn.getBody(), functions);
+			}
+			case LambdaNode lambda -> collectFunctions(lambda.getBody(), functions);
+			case QuoteNode ignored -> {
+			}
+			default -> {
+				for (AstNode child : node.getChildren()) {
+					collectFunctions(child, functions);
+				}
+			}
+		}
+	}
+
+	private byte[] generate(FunctionNode fn) {
+		ArrayList<String> params = fn.getParameters();
+		if (params.size() * 2 > MAX_LOCAL_SLOTS
+				|| new HashSet<>(params).size() != params.size()
+				|| params.contains(fn.getFunctionName())) {
+			throw UNSUPPORTED;
+		}
+
+		function = fn;
+		locals = new HashMap<>();
+		nextLocal = 0;
+		for (String param : params) {
+			locals.put(param, new Local(nextLocal, Type.NUM));
+			nextLocal += 2;
+		}
+
+		writer = new ClassFileWriter(CLASS_NAME, "java/lang/Object", "stages/NumericFunction");
+		String runDescriptor = "(" + "D".repeat(params.size()) + ")D";
+		runMethod = writer.methodRef(CLASS_NAME, "run", runDescriptor);
+
+		Code init = writer.method(ACC_PUBLIC, "<init>", "()V", 1);
+		init.op(ALOAD_0, 1);
+		init.opShort(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"), -1);
+		init.op(RETURN, 0);
+
+		Code apply = writer.method(ACC_PUBLIC, "apply", "([D)D", 2);
+		for (int i = 0; i < params.size(); i++) {
+			apply.op(ALOAD_1, 1);
+			apply.opByte(BIPUSH, i, 1);
+			apply.op(DALOAD, 0);
+		}
+		apply.opShort(INVOKESTATIC, runMethod, 2 - 2 * params.size());
+		apply.op(DRETURN, -2);
+
+		code = writer.method(ACC_PUBLIC | ACC_STATIC, "run", runDescriptor, nextLocal);
+		start = new Label();
+		code.mark(start);
+
+		Set<String> assigned = new HashSet<>(params);
+		AstNode body = fn.getBody();
+		Type result = body instanceof ReturnNode ret
+				? emit(ret.getValue(), false, assigned)
+				: emit(body, true, assigned);
+		expect(result, Type.NUM);
+		code.op(DRETURN, -2);
+
+		return writer.toByteArray();
+	}
+
+	private Type emit(AstNode node, boolean tail, Set<String> assigned) {
+		switch (node) {
+			case LiteralNode literal -> {
+				return emitConstant(literal.getRuntimeValue());
+			}
+			case AtomNode atom -> {
+				String name = atom.getValue();
+				Local local = locals.get(name);
+				if (local == null || !assigned.contains(name) || isOperatorName(name)) {
+					throw UNSUPPORTED;
+				}
+				if (local.type() == Type.NUM) {
+					code.opByte(DLOAD, local.index(), 2);
+				} else {
+					code.opByte(ILOAD, local.index(), 1);
+				}
+				return local.type();
+			}
+			case OperationNode operation -> {
+				return emitOperation(operation, assigned);
+			}
+			case ComparisonNode comparison -> {
+				return emitComparison(comparison, assigned);
+			}
+			case CondNode cond -> {
+				return emitCond(cond, tail, false, assigned);
+			}
+			case WhileNode loop -> {
+				return emitWhile(loop, assigned);
+			}
+			case SetqNode setq -> {
+				return emitSetq(setq, assigned);
+			}
+			case ProgNode prog -> {
+				return emitProg(prog, tail, false, assigned);
+			}
+			case CallNode call -> {
+				return emitSelfCall(call, tail, assigned);
+			}
+			default -> throw UNSUPPORTED;
+		}
+	}
+
+	/* Evaluates node for its effects only */
+	private void emitStatement(AstNode node, Set<String> assigned) {
+		switch (node) {
+			case CondNode cond -> emitCond(cond, false, true, assigned);
+			case ProgNode prog -> emitProg(prog, false, true, assigned);
+			default -> {
+				Type type = emit(node, false, assigned);
+				if (type == Type.NUM) {
+					code.op(POP2, -2);
+				} else if (type == Type.BOOL) {
+					code.op(POP, -1);
+				}
+			}
+		}
+	}
+
+	private Type emitConstant(Object value) {
+		if (value instanceof Integer || (value instanceof Double d && !Builtins.isInteger(d))) {
+			double number = ((Number) value).doubleValue();
+			if (number == 0) {
+				code.op(DCONST_0, 2);
+			} else if (number == 1) {
+				code.op(DCONST_1, 2);
+			} else {
+				code.opShort(LDC2_W, writer.doubleConstant(number), 2);
+			}
+			return Type.NUM;
+		}
+		if (value instanceof Boolean b) {
+			code.op(b ? ICONST_1 : ICONST_0, 1);
+			return Type.BOOL;
+		}
+		throw UNSUPPORTED;
+	}
+
+	private Type emitOperation(OperationNode operation, Set<String> assigned) {
+		List<AstNode> operands = operation.getChildren();
+		if (operands.size() != 2) {
+			throw UNSUPPORTED;
+		}
+
+		expect(emit(operands.get(0), false, assigned), Type.NUM);
+		expect(emit(operands.get(1), false, assigned), Type.NUM);
+
+		switch (operation.getOperatorType()) {
+			case PLUS -> code.op(DADD, -2);
+			case MINUS -> code.op(DSUB, -2);
+			case TIMES -> code.op(DMUL, -2);
+			case DIVIDE -> {
+				code.opShort(INVOKESTATIC, writer.methodRef(OWNER, "divide", "(DD)D"), -2);
+				return Type.NUM;
+			}
+			default -> throw UNSUPPORTED;
+		}
+		code.opShort(INVOKESTATIC, writer.methodRef(OWNER, "narrow", "(D)D"), 0);
+		return Type.NUM;
+	}
+
+	private Type emitComparison(ComparisonNode comparison, Set<String> assigned) {
+		expect(emit(comparison.getLeftElement(), false, assigned), Type.NUM);
+		expect(emit(comparison.getRightElement(), false, assigned), Type.NUM);
+
+		// same choice of dcmpl/dcmpg as javac, so comparisons with NaN come out false like in Java
+		int compare;
+		int jumpIfFalse;
+		switch (comparison.getComparisonType()) {
+			case EQUAL -> {
+				compare = DCMPL;
+				jumpIfFalse = IFNE;
+			}
+			case NONEQUAL -> {
+				compare = DCMPL;
+				jumpIfFalse = IFEQ;
+			}
+			case LESS -> {
+				compare = DCMPG;
+				jumpIfFalse = IFGE;
+			}
+			case LESSEQ -> {
+				compare = DCMPG;
+				jumpIfFalse = IFGT;
+			}
+			case GREATER -> {
+				compare = DCMPL;
+				jumpIfFalse = IFLE;
+			}
+			case GREATEREQ -> {
+				compare = DCMPL;
+				jumpIfFalse = IFLT;
+			}
+			default -> throw UNSUPPORTED;
+		}
+
+		Label otherwise = new Label();
+		Label end = new Label();
+		code.op(compare, -3);
+		code.jump(jumpIfFalse, otherwise, -1);
+		code.op(ICONST_1, 1);
+		code.jump(GOTO, end, 0);
+		code.mark(otherwise);
+		code.op(ICONST_0, 1);
+		code.mark(end);
+		return Type.BOOL;
+	}
+
+	private Type emitCond(CondNode cond, boolean tail, boolean discard, Set<String> assigned) {
+		List<AstNode> kids = cond.getChildren();
+		if (kids == null || kids.isEmpty()) {
+			throw UNSUPPORTED;
+		}
+
+		AstNode thenBranch = kids.size() >= 2 ? kids.get(1) : null;
+		AstNode elseBranch = kids.size() >= 3 ? kids.get(2) : null;
+
+		expect(emit(kids.get(0), false, assigned), Type.BOOL);
+
+		Label otherwise = new Label();
+		Label end = new Label();
+		code.jump(IFEQ, otherwise, -1);
+
+		Set<String> thenAssigned = new HashSet<>(assigned);
+		Type thenType = emitBranch(thenBranch, tail, discard, thenAssigned);
+		code.jump(GOTO, end, 0);
+
+		code.mark(otherwise);
+		Set<String> elseAssigned = new HashSet<>(assigned);
+		Type elseType = emitBranch(elseBranch, tail, discard, elseAssigned);
+		code.mark(end);
+
+		if (thenType != elseType || (!discard && thenType == Type.NULL)) {
+			throw UNSUPPORTED;
+		}
+
+		thenAssigned.retainAll(elseAssigned);
+		assigned.addAll(thenAssigned);
+		return thenType;
+	}
+
+	private Type emitBranch(AstNode branch, boolean tail, boolean discard, Set<String> assigned) {
+		if (branch == null) {
+			return Type.NULL;
+		}
+		if (discard) {
+			emitStatement(branch, assigned);
+			return Type.NULL;
+		}
+		return emit(branch, tail, assigned);
+	}
+
+	private Type emitWhile(WhileNode loop, Set<String> assigned) {
+		Label head = new Label();
+		Label end = new Label();
+
+		code.mark(head);
+		expect(emit(loop.getCondition(), false, assigned), Type.BOOL);
+		code.jump(IFEQ, end, -1);
+
+		// the body might not run at all, so what it assigns does not count afterwards
+		Set<String> bodyAssigned = new HashSet<>(assigned);
+		for (AstNode statement : loop.getBody()) {
+			emitStatement(statement, bodyAssigned);
+		}
+		code.jump(GOTO, head, 0);
+		code.mark(end);
+		return Type.NULL;
+	}
+
+	private Type emitSetq(SetqNode setq, Set<String> assigned) {
+		String name = setq.getName();
+		AstNode rhs = setq.getValue();
+		if (rhs instanceof QuoteNode || name.equals(function.getFunctionName())) {
+			throw UNSUPPORTED;
+		}
+
+		Type type = emit(rhs, false, assigned);
+		if (type == Type.NULL) {
+			throw UNSUPPORTED;
+		}
+
+		Local local = locals.get(name);
+		if (local == null) {
+			if (nextLocal + 2 > MAX_LOCAL_SLOTS) {
+				throw UNSUPPORTED;
+			}
+			local = new Local(nextLocal, type);
+			locals.put(name, local);
+			nextLocal += 2;
+			code.useLocals(nextLocal);
+		} else if (local.type() != type) {
+			throw UNSUPPORTED;
+		}
+
+		if (type == Type.NUM) {
+			code.opByte(DSTORE, local.index(), -2);
+		} else {
+			code.opByte(ISTORE, local.index(), -1);
+		}
+		assigned.add(name);
+		return Type.NULL;
+	}
+
+	private Type emitProg(ProgNode prog, boolean tail, boolean discard, Set<String> assigned) {
+		List<AstNode> children = prog.getChildren();
+
+		for (int i = 0; i < children.size(); i++) {
+			AstNode child = children.get(i);
+
+			// a return ends the prog right here, the statements after it never run
+			if (child instanceof ReturnNode ret) {
+				if (discard) {
+					emitStatement(ret.getValue(), assigned);
+					return Type.NULL;
+				}
+				return emit(ret.getValue(), false, assigned);
+			}
+
+			if (i == children.size() - 1 && !discard) {
+				return emit(child, tail, assigned);
+			}
+			emitStatement(child, assigned);
+		}
+
+		return Type.NULL;
+	}
+
+	private Type emitSelfCall(CallNode call, boolean tail, Set<String> assigned) {
+		String name = function.getFunctionName();
+		ArrayList<AstNode> args = call.getArguments();
+		if (!(call.getCallee() instanceof AtomNode callee)
+				|| !callee.getValue().equals(name)
+				|| locals.containsKey(name)
+				|| args.size() != function.getParameters().size()) {
+			throw UNSUPPORTED;
+		}
+
+		int depth = code.stack();
+		for (AstNode arg : args) {
+			expect(emit(arg, false, assigned), Type.NUM);
+		}
+
+		if (tail && depth == 0 && call.getTailCallOf() == function) {
+			// rebind the parameters and start over instead of calling
+			for (int i = args.size() - 1; i >= 0; i--) {
+				code.opByte(DSTORE, 2 * i, -2);
+			}
+			code.jump(GOTO, start, 0);
+			code.setStack(depth + 2);
+			return Type.NUM;
+		}
+
+		code.opShort(INVOKESTATIC, runMethod, 2 - 2 * args.size());
+		return Type.NUM;
+	}
+
+	private static void expect(Type actual, Type expected) {
+		if (actual != expected) {
+			throw UNSUPPORTED;
+		}
+	}
+
+	private static boolean isOperatorName(String name) {
+		return name.equals("plus") || name.equals("minus") || name.equals("times") || name.equals("divide");
+	}
+}
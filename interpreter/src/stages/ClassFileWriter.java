@@ -0,0 +1,290 @@
+package stages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Minimal class file assembler used by the BytecodeCompiler.
+ * Classes are written as version 49 so the verifier infers types itself and no stack map frames are needed.
+ */
+final class ClassFileWriter {
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int DCONST_0 = 0x0e;
+	static final int DCONST_1 = 0x0f;
+	static final int BIPUSH = 0x10;
+	static final int LDC2_W = 0x14;
+	static final int ILOAD = 0x15;
+	static final int DLOAD = 0x18;
+	static final int ALOAD_0 = 0x2a;
+	static final int ALOAD_1 = 0x2b;
+	static final int DALOAD = 0x31;
+	static final int ISTORE = 0x36;
+	static final int DSTORE = 0x39;
+	static final int POP = 0x57;
+	static final int POP2 = 0x58;
+	static final int DADD = 0x63;
+	static final int DSUB = 0x67;
+	static final int DMUL = 0x6b;
+	static final int DCMPL = 0x97;
+	static final int DCMPG = 0x98;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int GOTO = 0xa7;
+	static final int DRETURN = 0xaf;
+	static final int RETURN = 0xb1;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> constants = new HashMap<>();
+	private int poolSize = 1;
+
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final ArrayList<Code> methods = new ArrayList<>();
+
+	ClassFileWriter(String name, String superName, String... interfaceNames) {
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+		interfaces = new int[interfaceNames.length];
+		for (int i = 0; i < interfaceNames.length; i++) {
+			interfaces[i] = classRef(interfaceNames[i]);
+		}
+	}
+
+	int utf8(String value) {
+		Integer index = constants.get("U" + value);
+		if (index != null) return index;
+		try {
+			pool.writeByte(1);
+			pool.writeUTF(value);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return register("U" + value, 1);
+	}
+
+	int classRef(String internalName) {
+		int name = utf8(internalName);
+		return entry("C" + internalName, 7, name);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		int ownerIndex = classRef(owner);
+		int nameAndType = entry("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+		return entry("M" + owner + "." + name + ":" + descriptor, 10, ownerIndex, nameAndType);
+	}
+
+	int doubleConstant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		Integer index = constants.get("D" + bits);
+		if (index != null) return index;
+		try {
+			pool.writeByte(6);
+			pool.writeLong(bits);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		// doubles take two constant pool entries
+		return register("D" + bits, 2);
+	}
+
+	Code method(int access, String name, String descriptor, int maxLocals) {
+		Code code = new Code(access, utf8(name), utf8(descriptor), maxLocals);
+		methods.add(code);
+		return code;
+	}
+
+	byte[] toByteArray() {
+		int codeAttribute = utf8("Code");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(poolSize);
+			pool.flush();
+			poolBytes.writeTo(out);
+
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for (int index : interfaces) {
+				out.writeShort(index);
+			}
+
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for (Code method : methods) {
+				method.writeTo(out, codeAttribute);
+			}
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private int entry(String key, int tag, int... operands) {
+		Integer index = constants.get(key);
+		if (index != null) return index;
+		try {
+			pool.writeByte(tag);
+			for (int operand : operands) {
+				pool.writeShort(operand);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return register(key, 1);
+	}
+
+	private int register(String key, int width) {
+		int index = poolSize;
+		constants.put(key, index);
+		poolSize += width;
+		return index;
+	}
+
+	static final class Label {
+		private int position = -1;
+		private int stack = -1;
+		private final ArrayList<int[]> fixups = new ArrayList<>();
+	}
+
+	/* Bytecode of one method; keeps track of the operand stack depth to compute max_stack */
+	static final class Code {
+		private final int access;
+		private final int name;
+		private final int descriptor;
+		private int maxLocals;
+
+		private byte[] buf = new byte[64];
+		private int length;
+		private int stack;
+		private int maxStack;
+
+		private Code(int access, int name, int descriptor, int maxLocals) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.maxLocals = maxLocals;
+		}
+
+		int stack() {
+			return stack;
+		}
+
+		void setStack(int depth) {
+			stack = depth;
+			maxStack = Math.max(maxStack, depth);
+		}
+
+		void useLocals(int count) {
+			maxLocals = Math.max(maxLocals, count);
+		}
+
+		void op(int opcode, int stackDelta) {
+			put(opcode);
+			setStack(stack + stackDelta);
+		}
+
+		void opByte(int opcode, int operand, int stackDelta) {
+			put(opcode);
+			put(operand);
+			setStack(stack + stackDelta);
+		}
+
+		void opShort(int opcode, int operand, int stackDelta) {
+			put(opcode);
+			put(operand >> 8);
+			put(operand);
+			setStack(stack + stackDelta);
+		}
+
+		void jump(int opcode, Label target, int stackDelta) {
+			int at = length;
+			put(opcode);
+			put(0);
+			put(0);
+			setStack(stack + stackDelta);
+
+			if (target.stack < 0) {
+				target.stack = stack;
+			}
+			if (target.position >= 0) {
+				patch(at, target.position);
+			} else {
+				target.fixups.add(new int[]{at});
+			}
+		}
+
+		/* Places the label here; code after an unconditional jump continues with the depth the label was reached with */
+		void mark(Label label) {
+			label.position = length;
+			if (label.stack >= 0) {
+				setStack(label.stack);
+			} else {
+				label.stack = stack;
+			}
+			for (int[] fixup : label.fixups) {
+				patch(fixup[0], length);
+			}
+			label.fixups.clear();
+		}
+
+		private void patch(int at, int target) {
+			int offset = target - at;
+			if (offset != (short) offset) {
+				throw new IllegalStateException("BYTECODE ERROR: METHOD TOO LARGE");
+			}
+			buf[at + 1] = (byte) (offset >> 8);
+			buf[at + 2] = (byte) offset;
+		}
+
+		private void put(int value) {
+			if (length == buf.length) {
+				byte[] grown = new byte[buf.length * 2];
+				System.arraycopy(buf, 0, grown, 0, length);
+				buf = grown;
+			}
+			buf[length++] = (byte) value;
+		}
+
+		private void writeTo(DataOutputStream out, int codeAttribute) throws IOException {
+			out.writeShort(access);
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+
+			out.writeShort(codeAttribute);
+			out.writeInt(12 + length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(length);
+			out.write(buf, 0, length);
+			out.writeShort(0);
+			out.writeShort(0);
+		}
+	}
+}
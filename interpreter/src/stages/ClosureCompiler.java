@@ -0,0 +1,555 @@
+package stages;
+
+import models.nodes.*;
+import models.symbol_table.Frame;
+import models.symbol_table.SymbolTable;
+import models.values.FList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Alternative engine: translates the optimized tree into a tree of Evaluator closures once,
+ * so running the program no longer dispatches through accept/visit on every node.
+ * Semantics follow the Interpreter; eval'd code and bound values still go through it.
+ */
+public class ClosureCompiler {
+	private final ResultSink out;
+	/* runs the nodes left to the Interpreter, one per thread since it carries the environment it runs in */
+	private final ThreadLocal<Interpreter> interpreters;
+
+	private static final class TailCall {
+		private final AstNode[] args;
+
+		private TailCall(AstNode[] args) {
+			this.args = args;
+		}
+	}
+
+	public ClosureCompiler() {
+		this(ResultSink.printing(System.err));
+	}
+
+	/* out receives the results of the top level forms */
+	public ClosureCompiler(ResultSink out) {
+		this.out = out;
+		this.interpreters = ThreadLocal.withInitial(() -> new Interpreter(null, false, out));
+	}
+
+	/* globalScope has the same meaning as for the Interpreter: top level results are printed */
+	public Evaluator compileProgram(AstNode root, boolean globalScope) {
+		if (root instanceof ProgNode prog) {
+			return compileProg(prog, globalScope);
+		}
+		return compile(root, globalScope);
+	}
+
+	/* global mirrors the Interpreter flag: progs reached from the top level print their results */
+	private Evaluator compile(AstNode node, boolean global) {
+		return switch (node) {
+			case RuntimeLiteralNode rl -> constant(rl.getValue());
+			case LiteralNode literal -> constant(literal.getRuntimeValue());
+			case AtomNode atom -> compileAtom(atom);
+			case OperationNode operation -> compileOperation(operation, global);
+			case ComparisonNode comparison -> compileComparison(comparison, global);
+			case LogicalNode logical -> compileLogical(logical, global);
+			case NotNode not -> {
+				Evaluator argument = compile(not.getArgument(), global);
+				yield scope -> Builtins.evalNot(argument.eval(scope));
+			}
+			case PredicateNode predicate -> compilePredicate(predicate, global);
+			case CondNode cond -> compileCond(cond, global);
+			case WhileNode loop -> compileWhile(loop, global);
+			case ProgNode prog -> compileProg(prog, global);
+			case SetqNode setq -> compileSetq(setq, global);
+			case FunctionNode function -> scope -> {
+				scope.define(function.getFunctionName(), function);
+				return null;
+			};
+			case LambdaNode lambda -> scope -> lambda;
+			case CallNode call -> compileCall(call, global);
+			case ListNode list -> compileList(list, global);
+			case QuoteNode quote -> {
+				yield scope -> Builtins.evalQuote(quote);
+			}
+			case HeadNode head -> {
+				Evaluator list = compile(head.getListExpr(), global);
+				yield scope -> Builtins.evalHead(list.eval(scope));
+			}
+			case TailNode tail -> {
+				Evaluator list = compile(tail.getListExpr(), global);
+				yield scope -> Builtins.evalTail(list.eval(scope));
+			}
+			case ConsNode cons -> {
+				Evaluator item = compile(cons.getItem(), global);
+				Evaluator list = compile(cons.getList(), global);
+				yield scope -> {
+					Object head = item.eval(scope);
+					return Builtins.evalCons(head, list.eval(scope));
+				};
+			}
+			case ListOpNode listOp -> compileListOperation(listOp, global);
+			case ReturnNode ret -> {
+				// like the Interpreter the node itself travels to the call, which runs its value there
+				ret.setCompiledValue(compile(ret.getValue(), false));
+				yield scope -> scope.completion = ret;
+			}
+			case BreakNode brk -> scope -> scope.completion = brk;
+			default -> scope -> {
+				Object result = interpreters.get().evaluate(node, scope, global);
+				// a break the interpreter ran ends the loops here too
+				if (result instanceof BreakNode) scope.completion = result;
+				return result;
+			};
+		};
+	}
+
+	private static Evaluator constant(Object value) {
+		return scope -> value;
+	}
+
+	private Evaluator compileProg(ProgNode prog, boolean global) {
+		List<AstNode> children = prog.getChildren();
+		int size = children.size();
+		Evaluator[] statements = new Evaluator[size];
+		boolean[] printed = new boolean[size];
+		boolean[] printedIfNull = new boolean[size];
+		int returnAt = size;
+
+		for (int i = 0; i < size; i++) {
+			AstNode child = children.get(i);
+
+			if (child instanceof ReturnNode ret) {
+				statements[i] = compile(ret.getValue(), global);
+				returnAt = i + 1;
+				break;
+			}
+
+			statements[i] = child instanceof ProgNode inner
+					? compileProg(inner, false)
+					: compile(child, global);
+
+			NodeType t = child.getType();
+			printed[i] = global && switch (t) {
+				case SETQ, FUNC, WHILE, BREAK, RETURN -> false;
+				default -> true;
+			};
+			printedIfNull[i] = t == NodeType.ATOM || t == NodeType.QUOTE;
+		}
+
+		int count = returnAt;
+		return scope -> {
+			Object result = null;
+			for (int i = 0; i < count; i++) {
+				result = statements[i].eval(scope);
+				if (printed[i] && (result != null || printedIfNull[i])) {
+					out.accept(result);
+				}
+			}
+			return result;
+		};
+	}
+
+	private Evaluator compileAtom(AtomNode atom) {
+		String name = atom.getValue();
+		int slot = atom.getSlot();
+
+		return scope -> {
+			AstNode bound = (slot >= 0 && scope instanceof Frame frame)
+					? frame.lookup(slot, name)
+					: scope.find(name);
+
+			if (bound == null) {
+				throw new RuntimeException("INTERPRETATION ERROR: UNDEFINED VARIABLE " + name);
+			}
+
+			if (bound == atom) {
+				throw new RuntimeException("INTERPRETATION ERROR: SELF-REFERENTIAL VARIABLE " + name);
+			}
+
+			if (bound instanceof RuntimeLiteralNode rl) {
+				return rl.getValue();
+			}
+
+			if (bound instanceof FunctionNode || bound instanceof LambdaNode) {
+				return bound;
+			}
+
+			// a stored return or break is one again when it is read, as in the Interpreter
+			if (bound instanceof ReturnNode || bound instanceof BreakNode) {
+				return scope.completion = bound;
+			}
+
+			return interpreters.get().evaluate(bound, scope, false);
+		};
+	}
+
+	private Evaluator compileOperation(OperationNode operation, boolean global) {
+		Evaluator[] operands = compileAll(operation.getChildren(), global);
+
+		if (operands.length == 2) {
+			Evaluator left = operands[0];
+			Evaluator right = operands[1];
+
+			switch (operation.getOperatorType()) {
+				case PLUS -> {
+					return scope -> Builtins.plus(left.eval(scope), right.eval(scope));
+				}
+				case MINUS -> {
+					return scope -> Builtins.minus(left.eval(scope), right.eval(scope));
+				}
+				case TIMES -> {
+					return scope -> Builtins.times(left.eval(scope), right.eval(scope));
+				}
+				case DIVIDE -> {
+					return scope -> Builtins.divide(left.eval(scope), right.eval(scope));
+				}
+				default -> {
+				}
+			}
+		}
+
+		String operator = operation.getOperator();
+		return scope -> Builtins.evalOperation(operator, evalAll(operands, scope));
+	}
+
+	private Evaluator compileComparison(ComparisonNode comparison, boolean global) {
+		Evaluator left = compile(comparison.getLeftElement(), global);
+		Evaluator right = compile(comparison.getRightElement(), global);
+
+		return switch (comparison.getComparisonType()) {
+			case EQUAL -> scope -> Builtins.equal(left.eval(scope), right.eval(scope));
+			case NONEQUAL -> scope -> Builtins.nonEqual(left.eval(scope), right.eval(scope));
+			case LESS -> scope -> Builtins.less(left.eval(scope), right.eval(scope));
+			case LESSEQ -> scope -> Builtins.lessEq(left.eval(scope), right.eval(scope));
+			case GREATER -> scope -> Builtins.greater(left.eval(scope), right.eval(scope));
+			case GREATEREQ -> scope -> Builtins.greaterEq(left.eval(scope), right.eval(scope));
+			default -> scope -> Builtins.evalBinaryComparison(
+					comparison.getComparisonType(), left.eval(scope), right.eval(scope));
+		};
+	}
+
+	private Evaluator compileLogical(LogicalNode logical, boolean global) {
+		Evaluator left = compile(logical.getChildren().get(0), global);
+		Evaluator right = compile(logical.getChildren().get(1), global);
+		String operator = logical.getOperator();
+
+		return scope -> {
+			Object leftVal = left.eval(scope);
+			return Builtins.evalLogical(operator, leftVal, right.eval(scope));
+		};
+	}
+
+	private Evaluator compilePredicate(PredicateNode predicate, boolean global) {
+		String name = predicate.getPredicate();
+		AstNode argNode = predicate.getArgument();
+
+		if ("isatom".equals(name)) {
+			if (argNode instanceof AtomNode
+					|| (argNode instanceof QuoteNode q && q.getQuotedExpr() instanceof AtomNode)) {
+				return constant(true);
+			}
+			Evaluator argument = compile(argNode, global);
+			return scope -> argument.eval(scope) instanceof String;
+		}
+
+		Evaluator argument = compile(argNode, global);
+		return scope -> Builtins.evalPredicate(name, argument.eval(scope));
+	}
+
+	private Evaluator compileCond(CondNode cond, boolean global) {
+		List<AstNode> kids = cond.getChildren();
+
+		AstNode condition;
+		AstNode thenBranch;
+		AstNode elseBranch;
+
+		if (kids != null && !kids.isEmpty()) {
+			condition = kids.get(0);
+			thenBranch = kids.size() >= 2 ? kids.get(1) : null;
+			elseBranch = kids.size() >= 3 ? kids.get(2) : null;
+		} else {
+			condition = cond.getCondition();
+			thenBranch = cond.getAction();
+			elseBranch = cond.getDefaultAction();
+		}
+
+		Evaluator test = compile(condition, global);
+		Evaluator then = compileBranch(thenBranch, global);
+		Evaluator otherwise = compileBranch(elseBranch, global);
+
+		return scope -> {
+			Object condVal = test.eval(scope);
+			if (!(condVal instanceof Boolean)) {
+				throw new RuntimeException("INTERPRETATION ERROR: COND CONDITION IS NOT BOOLEAN");
+			}
+			return (Boolean) condVal ? then.eval(scope) : otherwise.eval(scope);
+		};
+	}
+
+	private Evaluator compileBranch(AstNode branch, boolean global) {
+		if (branch == null) {
+			return constant(null);
+		}
+
+		if (branch instanceof AtomNode atom) {
+			String name = atom.getValue();
+			if (name.equals("plus") ||
+					name.equals("minus") ||
+					name.equals("times") ||
+					name.equals("divide")) {
+				return constant(name);
+			}
+		}
+
+		return compile(branch, global);
+	}
+
+	private Evaluator compileWhile(WhileNode loop, boolean global) {
+		Evaluator condition = compile(loop.getCondition(), global);
+		Evaluator[] body = compileAll(loop.getBody(), global);
+
+		return scope -> {
+			while ((boolean) condition.eval(scope)) {
+				for (Evaluator statement : body) {
+					Object result = statement.eval(scope);
+
+					// a break ends the loop, a return leaves it on its way to the call
+					if (result == scope.completion) {
+						return result instanceof BreakNode ? null : result;
+					}
+				}
+			}
+			return null;
+		};
+	}
+
+	private Evaluator compileSetq(SetqNode setq, boolean global) {
+		String name = setq.getName();
+		int slot = setq.getSlot();
+		AstNode rhs = setq.getValue();
+
+		Evaluator value = rhs instanceof QuoteNode ? constant(rhs) : compile(rhs, global);
+
+		return scope -> {
+			Object result = value.eval(scope);
+			AstNode toStore = result instanceof AstNode ast ? ast : new RuntimeLiteralNode(result);
+
+			if (slot >= 0 && scope instanceof Frame frame) {
+				frame.set(slot, toStore);
+			} else {
+				scope.define(name, toStore);
+			}
+			return null;
+		};
+	}
+
+	private Evaluator compileList(ListNode list, boolean global) {
+		Evaluator[] elements = compileAll(list.getElements(), global);
+
+		return scope -> {
+			Object[] values = new Object[elements.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = elements[i].eval(scope);
+			}
+			return FList.of(values);
+		};
+	}
+
+	private Evaluator compileCall(CallNode call, boolean global) {
+		Evaluator callee = compile(call.getCallee(), global);
+		Evaluator[] args = compileAll(call.getArguments(), global);
+		FunctionNode tailCallOf = call.getTailCallOf();
+
+		return scope -> {
+			Object fnValue = callee.eval(scope);
+
+			if (fnValue instanceof String s) {
+				switch (s) {
+					case "plus", "minus", "times", "divide" -> {
+						return Builtins.evalOperation(s, evalAll(args, scope));
+					}
+					default ->
+							throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
+				}
+			}
+
+			ArrayList<String> paramNames;
+			if (fnValue instanceof LambdaNode lambda) {
+				paramNames = lambda.getParameters();
+			} else if (fnValue instanceof FunctionNode func) {
+				paramNames = func.getParameters();
+			} else {
+				throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
+			}
+
+			if (args.length != paramNames.size()) {
+				throw new RuntimeException("INTERPRETATION ERROR: FUNCTION EXPECTED " +
+						paramNames.size() + " ARGS, got " + args.length);
+			}
+
+			Object[] argValues = new Object[args.length];
+			AstNode[] argNodes = new AstNode[args.length];
+			for (int i = 0; i < args.length; i++) {
+				Object argVal = args[i].eval(scope);
+				argValues[i] = argVal;
+				argNodes[i] = (argVal instanceof AstNode ast)
+						? ast
+						: new RuntimeLiteralNode(argVal);
+			}
+
+			if (tailCallOf == fnValue) {
+				return scope.completion = new TailCall(argNodes);
+			}
+
+			if (fnValue instanceof FunctionNode func) {
+				return invokeFunction(func, argValues, argNodes, scope);
+			}
+
+			return invoke((AstNode) fnValue, paramNames, argNodes, scope);
+		};
+	}
+
+	private Evaluator compileListOperation(ListOpNode listOp, boolean global) {
+		String operation = listOp.getOperation();
+		List<AstNode> argExprs = listOp.getArguments();
+		Evaluator[] args = new Evaluator[argExprs.size()];
+
+		for (int i = 0; i < args.length; i++) {
+			AstNode arg = argExprs.get(i);
+			args[i] = i == 0 && ListOpNode.takesFunction(operation)
+					&& arg instanceof AtomNode atom && Builtins.isOperatorName(atom.getValue())
+					? constant(atom.getValue())
+					: compile(arg, global);
+		}
+
+		return scope -> {
+			Object[] values = new Object[args.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = args[i].eval(scope);
+			}
+			if (listOp.runsInParallel(values[0])) {
+				return ParallelLists.eval(operation, values, (fnValue, argValues) -> apply(fnValue, argValues, scope), () -> {
+					SymbolTable part = new SymbolTable(scope);
+					return (fnValue, argValues) -> apply(fnValue, argValues, part);
+				});
+			}
+			return Builtins.evalListOperation(operation, values, (fnValue, argValues) -> apply(fnValue, argValues, scope));
+		};
+	}
+
+	/* Calls a function or lambda value with arguments that are already evaluated */
+	private Object apply(Object fnValue, Object[] argValues, SymbolTable caller) {
+		ArrayList<String> paramNames;
+		if (fnValue instanceof LambdaNode lambda) {
+			paramNames = lambda.getParameters();
+		} else if (fnValue instanceof FunctionNode func) {
+			paramNames = func.getParameters();
+		} else {
+			throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
+		}
+
+		if (argValues.length != paramNames.size()) {
+			throw new RuntimeException("INTERPRETATION ERROR: FUNCTION EXPECTED " +
+					paramNames.size() + " ARGS, got " + argValues.length);
+		}
+
+		AstNode[] argNodes = new AstNode[argValues.length];
+		for (int i = 0; i < argValues.length; i++) {
+			argNodes[i] = (argValues[i] instanceof AstNode ast)
+					? ast
+					: new RuntimeLiteralNode(argValues[i]);
+		}
+
+		if (fnValue instanceof FunctionNode func) {
+			return invokeFunction(func, argValues, argNodes, caller);
+		}
+
+		return invoke((AstNode) fnValue, paramNames, argNodes, caller);
+	}
+
+	/* Same as the Interpreter: named functions go through their memo cache and compiled code when they have them */
+	private Object invokeFunction(FunctionNode func, Object[] argValues, AstNode[] argNodes, SymbolTable caller) {
+		MemoCache memo = func.getMemoCache();
+		Object result = memo == null ? MemoCache.MISSING : memo.get(argValues);
+		if (result != MemoCache.MISSING) {
+			return result;
+		}
+
+		result = func.getNumericFunction() == null ? null : BytecodeCompiler.invoke(func, argValues, caller);
+		if (result == null) {
+			result = invoke(func, func.getParameters(), argNodes, caller);
+		}
+
+		if (memo != null) {
+			memo.put(argValues, result);
+		}
+		return result;
+	}
+
+	private Object invoke(AstNode function, ArrayList<String> paramNames, AstNode[] args, SymbolTable caller) {
+		Evaluator body;
+		String[] layout;
+
+		if (function instanceof FunctionNode func) {
+			if (func.getCompiledBody() == null) {
+				func.setCompiledBody(compile(func.getBody(), false));
+			}
+			body = func.getCompiledBody();
+			layout = func.getFrameLayout();
+		} else {
+			LambdaNode lambda = (LambdaNode) function;
+			if (lambda.getCompiledBody() == null) {
+				lambda.setCompiledBody(compile(lambda.getBody(), false));
+			}
+			body = lambda.getCompiledBody();
+			layout = lambda.getFrameLayout();
+		}
+
+		SymbolTable table = Frame.forCall(caller, layout, paramNames, args);
+		Object result = body.eval(table);
+
+		while (result == table.completion) {
+			// self calls in tail position hand their arguments back instead of recursing
+			if (result instanceof TailCall tailCall) {
+				if (table instanceof Frame frame) {
+					for (int i = 0; i < tailCall.args.length; i++) {
+						frame.set(i, tailCall.args[i]);
+					}
+				} else {
+					table = Frame.forCall(table, null, paramNames, tailCall.args);
+				}
+				result = body.eval(table);
+			} else {
+				if (result instanceof ReturnNode ret) {
+					// returns that came in through eval were not compiled with the program
+					if (ret.getCompiledValue() == null) {
+						ret.setCompiledValue(compile(ret.getValue(), false));
+					}
+					result = ret.getCompiledValue().eval(table);
+				}
+				// a break, or a signal the returned value evaluated to, goes on to the caller as a value
+				if (result == table.completion) caller.completion = result;
+				break;
+			}
+		}
+
+		return result;
+	}
+
+	private Evaluator[] compileAll(List<AstNode> nodes, boolean global) {
+		Evaluator[] compiled = new Evaluator[nodes.size()];
+		for (int i = 0; i < compiled.length; i++) {
+			compiled[i] = compile(nodes.get(i), global);
+		}
+		return compiled;
+	}
+
+	private static ArrayList<Object> evalAll(Evaluator[] evaluators, SymbolTable scope) {
+		ArrayList<Object> values = new ArrayList<>(evaluators.length);
+		for (Evaluator evaluator : evaluators) {
+			values.add(evaluator.eval(scope));
+		}
+		return values;
+	}
+}
@@ -0,0 +1,267 @@
+package stages;
+
+import models.nodes.*;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/*
+ * Forward constant propagation over the statements of the program, prog and function bodies.
+ *
+ * setq, func and eval only change the table they run in, and every call gets a table of its own,
+ * so a literal assigned by setq holds until the next assignment in the same table. The state is split
+ * at cond branches and merged after them, and a loop forgets everything its condition or body assigns.
+ * Function and lambda bodies start from nothing, their free names are looked up when they run.
+ *
+ * Afterwards assignments nobody reads are dropped from function bodies that neither call anything
+ * nor use eval or lambdas, since only those can be sure no other code looks into their frame,
+ * and statements after a return at the top of a prog are dropped as unreachable.
+ */
+final class ConstantPropagator {
+	private final UnaryOperator<AstNode> fold;
+	private final PrintStream log;
+
+	ConstantPropagator(UnaryOperator<AstNode> fold, PrintStream log) {
+		this.fold = fold;
+		this.log = log;
+	}
+
+	AstNode propagate(AstNode root) {
+		return visit(root, new HashMap<>());
+	}
+
+	private AstNode visit(AstNode node, Map<String, LiteralNode> env) {
+		if (node == null) return null;
+
+		switch (node) {
+			case AtomNode atom -> {
+				LiteralNode constant = env.get(atom.getValue());
+				if (constant == null) return atom;
+				if (log != null) log.println("Successfully propagated constant for: " + atom + ". Replaced with: " + constant);
+				return constant;
+			}
+			case QuoteNode quote -> {
+				return quote;
+			}
+			case FunctionNode fn -> {
+				env.remove(fn.getFunctionName());
+				visitBody(fn.getBody());
+				return fn;
+			}
+			case LambdaNode lambda -> {
+				lambda.setBody(visitBody(lambda.getBody()));
+				return lambda;
+			}
+			case SetqNode setq -> {
+				AstNode value = fold.apply(visit(setq.getValue(), env));
+				if (value != setq.getValue()) setq.replaceChild(0, value);
+
+				// null is never propagated: a top level atom holding it is printed, a literal null is not
+				if (value instanceof LiteralNode literal && literal.getRuntimeValue() != null) {
+					env.put(setq.getName(), literal);
+				} else {
+					env.remove(setq.getName());
+				}
+				return setq;
+			}
+			case EvalNode eval -> {
+				visitChildren(eval, env);
+				// the evaluated code runs in this table and may assign anything
+				env.clear();
+				return eval;
+			}
+			case CondNode cond -> {
+				return visitCond(cond, env);
+			}
+			case WhileNode loop -> {
+				Set<String> assigned = new HashSet<>();
+				if (assigns(loop, assigned)) env.clear();
+				env.keySet().removeAll(assigned);
+
+				List<AstNode> kids = loop.getChildren();
+				replace(loop, 0, visit(kids.get(0), env));
+				Map<String, LiteralNode> body = new HashMap<>(env);
+				for (int i = 1; i < kids.size(); i++) {
+					replace(loop, i, visit(kids.get(i), body));
+				}
+				return loop;
+			}
+			case LogicalNode logical -> {
+				// both operands are evaluated, the second pair of children repeats the first one
+				replace(logical, 0, visit(logical.getChildren().get(0), env));
+				replace(logical, 1, visit(logical.getChildren().get(1), env));
+				return logical;
+			}
+			case PredicateNode predicate when "isatom".equals(predicate.getPredicate())
+					&& predicate.getArgument() instanceof AtomNode -> {
+				// isatom looks at how its argument is written, a name is an atom whatever it holds
+				return predicate;
+			}
+			case CallNode call -> {
+				// a callee named by an atom stays a name so a bad call still reports what was called
+				List<AstNode> kids = call.getChildren();
+				for (int i = call.getCallee() instanceof AtomNode ? 1 : 0; i < kids.size(); i++) {
+					replace(call, i, visit(kids.get(i), env));
+				}
+				return call;
+			}
+			default -> {
+				visitChildren(node, env);
+				return node;
+			}
+		}
+	}
+
+	private void visitChildren(AstNode node, Map<String, LiteralNode> env) {
+		List<AstNode> kids = node.getChildren();
+		for (int i = 0; i < kids.size(); i++) {
+			replace(node, i, visit(kids.get(i), env));
+		}
+	}
+
+	private static void replace(AstNode parent, int index, AstNode child) {
+		if (parent.getChildren().get(index) != child) {
+			parent.replaceChild(index, child);
+		}
+	}
+
+	private AstNode visitCond(CondNode cond, Map<String, LiteralNode> env) {
+		List<AstNode> kids = cond.getChildren();
+		replace(cond, 0, fold.apply(visit(kids.get(0), env)));
+
+		// a branch that can never run neither uses nor changes anything
+		Object test = kids.get(0) instanceof LiteralNode literal ? literal.getRuntimeValue() : null;
+		if (test instanceof Boolean taken) {
+			int branch = taken ? 1 : 2;
+			if (branch < kids.size()) replace(cond, branch, visit(kids.get(branch), env));
+			return cond;
+		}
+
+		Map<String, LiteralNode> merged = null;
+		for (int i = 1; i < kids.size(); i++) {
+			Map<String, LiteralNode> branch = new HashMap<>(env);
+			replace(cond, i, visit(kids.get(i), branch));
+			merged = merged == null ? branch : intersect(merged, branch);
+		}
+		if (kids.size() < 3) merged = intersect(merged, env);
+
+		env.clear();
+		env.putAll(merged);
+		return cond;
+	}
+
+	private static Map<String, LiteralNode> intersect(Map<String, LiteralNode> a, Map<String, LiteralNode> b) {
+		Map<String, LiteralNode> result = new HashMap<>();
+		for (Map.Entry<String, LiteralNode> entry : a.entrySet()) {
+			LiteralNode other = b.get(entry.getKey());
+			if (other != null && Objects.equals(other.getRuntimeValue(), entry.getValue().getRuntimeValue())) {
+				result.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/* Collects the names assigned in the table node runs in; true when it uses eval, which may assign any */
+	static boolean assigns(AstNode node, Set<String> names) {
+		switch (node) {
+			case SetqNode setq -> names.add(setq.getName());
+			case FunctionNode fn -> {
+				names.add(fn.getFunctionName());
+				return false;
+			}
+			case LambdaNode lambda -> {
+				return false;
+			}
+			case QuoteNode quote -> {
+				return false;
+			}
+			case EvalNode eval -> {
+				assigns(eval.getExpr(), names);
+				return true;
+			}
+			default -> {
+			}
+		}
+
+		boolean usesEval = false;
+		for (AstNode child : node.getChildren()) {
+			usesEval |= assigns(child, names);
+		}
+		return usesEval;
+	}
+
+	private AstNode visitBody(AstNode body) {
+		AstNode result = visit(body, new HashMap<>());
+		if (result != null && isClosed(result)) {
+			Set<String> read = new HashSet<>();
+			collectReads(result, read);
+			removeDeadCode(result, read);
+		}
+		return result;
+	}
+
+	/* No other code can run while the body does, so nothing but the body itself reads its frame */
+	private static boolean isClosed(AstNode node) {
+		return switch (node.getType()) {
+			case CALL, EVAL, FUNC, LAMBDA, LISTOP -> false;
+			case QUOTE -> true;
+			default -> node.getChildren().stream().allMatch(ConstantPropagator::isClosed);
+		};
+	}
+
+	private static void collectReads(AstNode node, Set<String> read) {
+		if (node instanceof AtomNode atom) {
+			read.add(atom.getValue());
+		} else if (!(node instanceof QuoteNode)) {
+			for (AstNode child : node.getChildren()) {
+				collectReads(child, read);
+			}
+		}
+	}
+
+	private void removeDeadCode(AstNode node, Set<String> read) {
+		if (node instanceof ProgNode prog) {
+			List<AstNode> kids = prog.getChildren();
+			List<AstNode> kept = new ArrayList<>();
+			for (int i = 0; i < kids.size(); i++) {
+				AstNode stmt = kids.get(i);
+				boolean last = i == kids.size() - 1;
+
+				if (!last && stmt instanceof SetqNode setq && !read.contains(setq.getName()) && isHarmless(setq.getValue())) {
+					if (log != null) log.println("Successfully removed unused assignment: " + setq);
+					continue;
+				}
+
+				kept.add(stmt);
+				if (stmt instanceof ReturnNode && !last) {
+					if (log != null) log.println("Successfully removed unreachable code after: " + stmt);
+					break;
+				}
+			}
+			kids.clear();
+			kids.addAll(kept);
+		}
+
+		for (AstNode child : node.getChildren()) {
+			removeDeadCode(child, read);
+		}
+	}
+
+	/* Evaluating it has no effect and cannot fail, so skipping it changes nothing */
+	private static boolean isHarmless(AstNode value) {
+		return switch (value.getType()) {
+			case LITERAL, QUOTE -> true;
+			case OPERATION -> !"divide".equals(((OperationNode) value).getOperator())
+					&& value.getChildren().stream().allMatch(ConstantPropagator::isHarmless);
+			case COMP, LOGICALOP, NOT, PREDICATE -> value.getChildren().stream().allMatch(ConstantPropagator::isHarmless);
+			default -> false;
+		};
+	}
+}
@@ -0,0 +1,285 @@
+package stages;
+
+import models.nodes.*;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Classifies functions and expressions by what they can observe or change outside of their own frame.
+ *
+ * setq and func always define in the current table, so inside a function or lambda body they only touch
+ * its frame; at the top level they change globals. Reading a name that is neither a parameter, a local
+ * assigned on every path before the read nor a known function reads whatever the dynamic scope holds.
+ * Calls take on the effect of the callee; calls through function values and eval can do anything.
+ */
+public class EffectAnalyzer {
+	public enum Effect {
+		/* the result only depends on the arguments and nothing outside is changed */
+		PURE,
+		/* nothing outside is changed, but variables of the enclosing scopes are read */
+		READS_GLOBALS,
+		/* may change globals or run code that is not known here */
+		IMPURE;
+
+		public Effect join(Effect other) {
+			return compareTo(other) >= 0 ? this : other;
+		}
+	}
+
+	/* functions by name in definition order of the program, calls refer to these */
+	private final Map<String, FunctionNode> functions = new HashMap<>();
+	private final Map<FunctionNode, Effect> effects = new HashMap<>();
+	private final Map<FunctionNode, String> reasons = new HashMap<>();
+
+	/* functions whose body is being analyzed, with their depth and the effect assumed for calls back into them */
+	private final Map<FunctionNode, Integer> pending = new HashMap<>();
+	private final Map<FunctionNode, Effect> assumed = new HashMap<>();
+	private int lowestPending = Integer.MAX_VALUE;
+
+	/* Makes fn the function its name refers to; redefining a name drops everything derived from the old one */
+	public void define(FunctionNode fn) {
+		FunctionNode previous = functions.put(fn.getFunctionName(), fn);
+		if (previous != null && previous != fn) {
+			effects.clear();
+			reasons.clear();
+		}
+	}
+
+	/* The function name refers to at the top level, null when there is none */
+	public FunctionNode lookup(String name) {
+		return functions.get(name);
+	}
+
+	public Effect effectOf(FunctionNode fn) {
+		Effect known = effects.get(fn);
+		if (known != null) return known;
+
+		Integer depth = pending.get(fn);
+		if (depth != null) {
+			lowestPending = Math.min(lowestPending, depth);
+			return assumed.get(fn);
+		}
+
+		int ownDepth = pending.size();
+		int outerLowest = lowestPending;
+		Effect result = Effect.PURE;
+		Walk walk;
+
+		// recursive calls start out as pure and are raised until the body agrees with the assumption
+		while (true) {
+			pending.put(fn, ownDepth);
+			assumed.put(fn, result);
+			lowestPending = Integer.MAX_VALUE;
+
+			walk = new Walk(true, fn.getParameters());
+			if (fn.getBody() != null) walk(fn.getBody(), walk.scope, walk);
+
+			pending.remove(fn);
+			assumed.remove(fn);
+			if (walk.effect == result) break;
+			result = result.join(walk.effect);
+		}
+
+		// results that relied on a function further up the stack are only valid for that analysis
+		boolean settled = lowestPending >= ownDepth;
+		lowestPending = Math.min(outerLowest, lowestPending);
+		if (settled) {
+			effects.put(fn, result);
+			reasons.put(fn, walk.reason);
+		}
+		return result;
+	}
+
+	/* Effect of calling the lambda */
+	public Effect effectOf(LambdaNode lambda) {
+		Walk walk = new Walk(true, lambda.getParameters());
+		walk(lambda.getBody(), walk.scope, walk);
+		return walk.effect;
+	}
+
+	/* Effect of evaluating a top level expression */
+	public Effect effectOf(AstNode expr) {
+		Walk walk = new Walk(false, List.of());
+		walk(expr, walk.scope, walk);
+		return walk.effect;
+	}
+
+	/* Effect of evaluating an expression inside a function body where locals are already assigned */
+	public Effect effectOf(AstNode expr, Collection<String> locals) {
+		Walk walk = new Walk(true, locals);
+		walk(expr, walk.scope, walk);
+		return walk.effect;
+	}
+
+	/* Why fn is not pure, null when it is */
+	public String explain(FunctionNode fn) {
+		if (effectOf(fn) == Effect.PURE) return null;
+		String reason = reasons.get(fn);
+		return reason != null ? reason : "DEPENDS ON A FUNCTION THAT IS NOT PURE";
+	}
+
+	/* Names visible as locals at some point of a body */
+	private static final class Scope {
+		final Set<String> assigned;
+		final Map<String, FunctionNode> functions;
+
+		Scope(Set<String> assigned, Map<String, FunctionNode> functions) {
+			this.assigned = assigned;
+			this.functions = functions;
+		}
+
+		Scope copy() {
+			return new Scope(new HashSet<>(assigned), new HashMap<>(functions));
+		}
+	}
+
+	/* Accumulated effect of one analysis along with the first reason for it */
+	private static final class Walk {
+		final boolean inFunction;
+		final Scope scope;
+		Effect effect = Effect.PURE;
+		String reason;
+
+		Walk(boolean inFunction, Collection<String> locals) {
+			this.inFunction = inFunction;
+			this.scope = new Scope(new HashSet<>(locals), new HashMap<>());
+		}
+
+		void note(Effect found, String why) {
+			if (found.compareTo(effect) > 0) {
+				effect = found;
+				reason = why;
+			}
+		}
+	}
+
+	private void walk(AstNode node, Scope scope, Walk walk) {
+		if (node == null) return;
+
+		switch (node.getType()) {
+			case ATOM -> {
+				String name = ((AtomNode) node).getValue();
+				if (!scope.assigned.contains(name) && !scope.functions.containsKey(name) && !functions.containsKey(name)) {
+					walk.note(Effect.READS_GLOBALS, "READS THE FREE VARIABLE " + name);
+				}
+			}
+			case QUOTE, LAMBDA -> {
+				// values; a lambda only has an effect once it is called
+			}
+			case EVAL -> {
+				walk(((EvalNode) node).getExpr(), scope, walk);
+				walk.note(Effect.IMPURE, "USES EVAL");
+			}
+			case FUNC -> {
+				FunctionNode fn = (FunctionNode) node;
+				if (walk.inFunction) {
+					scope.functions.put(fn.getFunctionName(), fn);
+				} else {
+					walk.note(Effect.IMPURE, "DEFINES THE FUNCTION " + fn.getFunctionName());
+				}
+			}
+			case SETQ -> {
+				SetqNode setq = (SetqNode) node;
+				walk(setq.getValue(), scope, walk);
+				if (walk.inFunction) {
+					scope.assigned.add(setq.getName());
+				} else {
+					walk.note(Effect.IMPURE, "ASSIGNS THE GLOBAL VARIABLE " + setq.getName());
+				}
+			}
+			case COND -> {
+				// only names assigned in both branches count as assigned afterwards
+				List<AstNode> kids = node.getChildren();
+				walk(kids.get(0), scope, walk);
+				Scope joined = null;
+				for (int i = 1; i < kids.size(); i++) {
+					Scope branch = scope.copy();
+					walk(kids.get(i), branch, walk);
+					if (joined == null) {
+						joined = branch;
+					} else {
+						joined.assigned.retainAll(branch.assigned);
+						joined.functions.keySet().retainAll(branch.functions.keySet());
+					}
+				}
+				if (kids.size() == 3) {
+					scope.assigned.addAll(joined.assigned);
+					scope.functions.putAll(joined.functions);
+				}
+			}
+			case WHILE -> {
+				// the body may never run, what it assigns is not known to be set after the loop
+				List<AstNode> kids = node.getChildren();
+				walk(kids.get(0), scope, walk);
+				Scope body = scope.copy();
+				for (int i = 1; i < kids.size(); i++) {
+					walk(kids.get(i), body, walk);
+				}
+			}
+			case CALL -> {
+				CallNode call = (CallNode) node;
+				walkCallee(call.getCallee(), scope, walk);
+				for (AstNode arg : call.getArguments()) {
+					walk(arg, scope, walk);
+				}
+			}
+			case LISTOP -> {
+				// map, filter and foldl call their first argument, an operator name is pure
+				ListOpNode listOp = (ListOpNode) node;
+				List<AstNode> args = listOp.getArguments();
+				for (int i = 0; i < args.size(); i++) {
+					AstNode arg = args.get(i);
+					if (i > 0 || !ListOpNode.takesFunction(listOp.getOperation())) {
+						walk(arg, scope, walk);
+					} else if (!(arg instanceof AtomNode atom && Builtins.isOperatorName(atom.getValue()))) {
+						walkCallee(arg, scope, walk);
+					}
+				}
+			}
+			default -> {
+				for (AstNode child : node.getChildren()) {
+					walk(child, scope, walk);
+				}
+			}
+		}
+	}
+
+	private void walkCallee(AstNode callee, Scope scope, Walk walk) {
+		if (callee instanceof AtomNode atom) {
+			String name = atom.getValue();
+			FunctionNode target = scope.functions.get(name);
+			if (target == null && !scope.assigned.contains(name)) {
+				target = functions.get(name);
+			}
+
+			if (target == null) {
+				walk.note(Effect.IMPURE, "CALLS THE FUNCTION VALUE " + name);
+				return;
+			}
+
+			Effect effect = effectOf(target);
+			walk.note(effect, effect == Effect.IMPURE
+					? "CALLS THE IMPURE FUNCTION " + name
+					: "CALLS " + name + " WHICH READS GLOBAL VARIABLES");
+			return;
+		}
+
+		if (callee instanceof LambdaNode lambda) {
+			// the body runs in a new frame, so its assignments stay there
+			Scope body = scope.copy();
+			body.assigned.addAll(lambda.getParameters());
+			Walk inner = new Walk(true, List.of());
+			walk(lambda.getBody(), body, inner);
+			walk.note(inner.effect, inner.reason);
+			return;
+		}
+
+		walk(callee, scope, walk);
+		walk.note(Effect.IMPURE, "CALLS A COMPUTED FUNCTION");
+	}
+}
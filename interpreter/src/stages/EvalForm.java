@@ -0,0 +1,121 @@
+package stages;
+
+import models.values.FList;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A quoted list prepared for eval: what its head names is decided once and the nested calls are
+ * prepared along with it, so evaluating the same list again only evaluates the arguments.
+ * Names are still looked up on every evaluation, the scope is dynamic.
+ *
+ * Lists are immutable, so a prepared form stays valid for as long as its list is alive; forms are
+ * cached by the identity of the list and dropped once the list is collected.
+ */
+final class EvalForm {
+	enum Kind { OPERATION, HEAD, TAIL, CONS, LIST, COMPARISON, PREDICATE, LOGICAL, NOT, EVAL, CALL }
+
+	private static final Map<IdentityKey, EvalForm> CACHE = new HashMap<>();
+	private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<>();
+
+	private final String name;
+	private final Kind kind;
+	/* nested forms, AST nodes to visit, names to look up or plain values */
+	private final Object[] arguments;
+
+	private EvalForm(String name, List<?> list) {
+		this.name = name;
+		this.kind = kindOf(name);
+		this.arguments = new Object[list.size() - 1];
+
+		int i = 0;
+		boolean first = true;
+		for (Object item : list) {
+			if (first) {
+				first = false;
+				continue;
+			}
+			// only lists headed by a name are calls, other lists are passed on as data
+			if (item instanceof List<?> sublist && !sublist.isEmpty() && sublist.get(0) instanceof String head) {
+				item = new EvalForm(head, sublist);
+			}
+			arguments[i++] = item;
+		}
+	}
+
+	String getName() { return name; }
+	Kind getKind() { return kind; }
+	Object[] getArguments() { return arguments; }
+
+	private static Kind kindOf(String name) {
+		return switch (name) {
+			case "plus", "minus", "times", "divide" -> Kind.OPERATION;
+			case "head" -> Kind.HEAD;
+			case "tail" -> Kind.TAIL;
+			case "cons" -> Kind.CONS;
+			case "map", "filter", "foldl", "length", "nth", "append", "reverse", "pmap", "preduce" -> Kind.LIST;
+			case "equal", "nonequal", "less", "lesseq", "greater", "greatereq" -> Kind.COMPARISON;
+			case "isint", "isreal", "isbool", "isnull", "isatom", "islist" -> Kind.PREDICATE;
+			case "and", "or", "xor", "nor", "nand", "xnor" -> Kind.LOGICAL;
+			case "not" -> Kind.NOT;
+			case "eval" -> Kind.EVAL;
+			default -> Kind.CALL;
+		};
+	}
+
+	/* Form of a list whose head was evaluated to name */
+	static EvalForm of(String name, List<?> list) {
+		return new EvalForm(name, list);
+	}
+
+	/* Form of a non empty list headed by a name, null when the head has to be evaluated first */
+	static EvalForm of(List<?> list) {
+		if (!(list.get(0) instanceof String name)) return null;
+		if (!(list instanceof FList)) return new EvalForm(name, list);
+
+		synchronized (CACHE) {
+			expungeCollected();
+			EvalForm form = CACHE.get(new IdentityKey(list, null));
+			if (form == null) {
+				form = new EvalForm(name, list);
+				CACHE.put(new IdentityKey(list, COLLECTED), form);
+			}
+			return form;
+		}
+	}
+
+	private static void expungeCollected() {
+		Reference<?> key;
+		while ((key = COLLECTED.poll()) != null) {
+			CACHE.remove(key);
+		}
+	}
+
+	/* Weak reference compared by the identity of its referent; a cleared one only equals itself */
+	private static final class IdentityKey extends WeakReference<Object> {
+		private final int hash;
+
+		IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) return true;
+			if (!(o instanceof IdentityKey other)) return false;
+			Object referent = get();
+			return referent != null && referent == other.get();
+		}
+	}
+}
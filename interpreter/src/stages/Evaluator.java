@@ -0,0 +1,9 @@
+package stages;
+
+import models.symbol_table.SymbolTable;
+
+/* A compiled piece of the program, produced once by the ClosureCompiler and run against a scope */
+@FunctionalInterface
+public interface Evaluator {
+	Object eval(SymbolTable scope);
+}
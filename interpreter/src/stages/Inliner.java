@@ -0,0 +1,362 @@
+package stages;
+
+import models.nodes.*;
+import models.token.Token;
+import models.token.TokenType;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Replaces calls to small top level functions with a copy of their body where the parameters are
+ * substituted by the argument expressions.
+ *
+ * Names are scoped dynamically, so a call is only inlined when the result cannot differ:
+ * the function name is defined once and never bound as a variable, so every call site reaches that definition;
+ * the body is a single expression without setq, func, lambda, loops, return or eval, so it binds nothing
+ * in the caller's frame; and it only calls pure functions, which do not look at the frames a call would add.
+ * Parameters are substituted simultaneously, so a parameter named like a variable of the arguments is not captured.
+ * Arguments must not have side effects. Literals and quotes cannot fail and are substituted, unless
+ * the body asks isatom about the parameter, which looks at how its argument is written. A name can be
+ * unbound, so an atom is only substituted when the body reads the parameter before anything else could
+ * fail and after the names of the arguments before it. Any other argument is assigned to a temporary
+ * before the body so it is evaluated once, in order, and its errors are raised even when the body does
+ * not use it; temporaries are named so that no program can refer to them.
+ */
+final class Inliner {
+	static final int MAX_BODY_SIZE = 16;
+	private static final String TEMPORARY_PREFIX = "#inline";
+
+	private final EffectAnalyzer effects;
+	private final PrintStream log;
+
+	/* top level functions whose name is bound nowhere else */
+	private final Map<String, FunctionNode> unique = new HashMap<>();
+	/* the inlinable expression of a function, or the function itself when it cannot be inlined */
+	private final Map<FunctionNode, AstNode> bodies = new IdentityHashMap<>();
+	private final Map<AstNode, AstNode> rewritten = new IdentityHashMap<>();
+	private AstNode root;
+	private int temporaries;
+
+	Inliner(EffectAnalyzer effects, PrintStream log) {
+		this.effects = effects;
+		this.log = log;
+	}
+
+	AstNode inline(AstNode root) {
+		// single forms run one after another in a session may be redefined later, only whole programs are inlined
+		if (!(root instanceof ProgNode)) return root;
+
+		Map<String, Integer> bindings = new HashMap<>();
+		countBindings(root, bindings);
+		for (AstNode form : root.getChildren()) {
+			if (form instanceof FunctionNode fn && bindings.get(fn.getFunctionName()) == 1) {
+				unique.put(fn.getFunctionName(), fn);
+			}
+		}
+
+		if (unique.isEmpty()) return root;
+		this.root = root;
+		return rewrite(root, false);
+	}
+
+	static void countBindings(AstNode node, Map<String, Integer> bindings) {
+		if (node == null) return;
+
+		switch (node) {
+			case QuoteNode quote -> {
+			}
+			case FunctionNode fn -> {
+				bindings.merge(fn.getFunctionName(), 1, Integer::sum);
+				for (String param : fn.getParameters()) bindings.merge(param, 1, Integer::sum);
+				countBindings(fn.getBody(), bindings);
+			}
+			case LambdaNode lambda -> {
+				for (String param : lambda.getParameters()) bindings.merge(param, 1, Integer::sum);
+				countBindings(lambda.getBody(), bindings);
+			}
+			default -> {
+				if (node instanceof SetqNode setq) bindings.merge(setq.getName(), 1, Integer::sum);
+				for (AstNode child : node.getChildren()) countBindings(child, bindings);
+			}
+		}
+	}
+
+	private AstNode rewrite(AstNode node, boolean topLevel) {
+		if (node == null) return null;
+
+		AstNode done = rewritten.get(node);
+		if (done != null) return done;
+
+		AstNode result = node;
+		switch (node) {
+			case QuoteNode quote -> {
+			}
+			case FunctionNode fn -> rewrite(fn.getBody(), false);
+			case LambdaNode lambda -> lambda.setBody(rewrite(lambda.getBody(), false));
+			default -> {
+				List<AstNode> kids = node.getChildren();
+				for (int i = 0; i < kids.size(); i++) {
+					AstNode child = rewrite(kids.get(i), node == root);
+					if (child != kids.get(i)) node.replaceChild(i, child);
+				}
+
+				if (node instanceof CallNode call) {
+					AstNode inlined = inlineCall(call);
+					// top level atoms and quotes are printed even when they are null, a call is not
+					if (topLevel && (inlined instanceof AtomNode || inlined instanceof QuoteNode)) inlined = null;
+					if (inlined != null) {
+						if (log != null) log.println("Successfully inlined call: " + call + ". Replaced with: " + inlined);
+						result = inlined;
+					}
+				}
+			}
+		}
+
+		rewritten.put(node, result);
+		return result;
+	}
+
+	private AstNode inlineCall(CallNode call) {
+		if (!(call.getCallee() instanceof AtomNode callee)) return null;
+
+		FunctionNode fn = unique.get(callee.getValue());
+		if (fn == null || fn.getMemoCache() != null) return null;
+
+		AstNode body = inlinableBody(fn);
+		if (body == null) return null;
+
+		List<String> params = fn.getParameters();
+		List<AstNode> args = call.getArguments();
+		if (args.size() != params.size()) return null;
+
+		for (AstNode arg : args) {
+			if (effects.effectOf(arg) == EffectAnalyzer.Effect.IMPURE) return null;
+		}
+
+		// arguments that may fail are evaluated into temporaries first, in order, as the call would
+		List<String> reads = new ArrayList<>();
+		leadingReads(body, params, reads);
+		boolean[] substituted = new boolean[params.size()];
+		boolean fallibleAfter = false;
+		int firstReadAfter = Integer.MAX_VALUE;
+		for (int i = params.size() - 1; i >= 0; i--) {
+			AstNode arg = args.get(i);
+			if (arg.getType() == NodeType.LITERAL || arg instanceof QuoteNode) {
+				substituted[i] = !asksIsatom(body, params.get(i));
+			} else if (arg instanceof AtomNode) {
+				int read = reads.indexOf(params.get(i));
+				substituted[i] = read >= 0 && !fallibleAfter && read < firstReadAfter;
+				if (substituted[i]) firstReadAfter = read;
+				else fallibleAfter = true;
+			} else {
+				fallibleAfter = true;
+			}
+		}
+
+		Map<String, AstNode> substitution = new HashMap<>();
+		ArrayList<AstNode> statements = new ArrayList<>();
+		for (int i = 0; i < params.size(); i++) {
+			AstNode arg = args.get(i);
+			if (substituted[i]) {
+				substitution.put(params.get(i), arg);
+			} else {
+				String temporary = TEMPORARY_PREFIX + temporaries++;
+				statements.add(new SetqNode(temporary, arg));
+				substitution.put(params.get(i), new AtomNode(new Token(TokenType.ATOM, temporary, 0)));
+			}
+		}
+
+		AstNode inlined = copy(body, substitution);
+		if (statements.isEmpty()) return inlined;
+
+		// a prog evaluates a direct return in place and never prints it, so the temporaries stay invisible
+		statements.add(new ReturnNode(inlined));
+		return new ProgNode(statements);
+	}
+
+	private AstNode inlinableBody(FunctionNode fn) {
+		AstNode cached = bodies.get(fn);
+		if (cached != null) return cached == fn ? null : cached;
+
+		AstNode body = null;
+		List<AstNode> exprs = fn.getBody() == null ? List.of() : fn.getBody().getChildren();
+		if (exprs.size() == 1 && size(exprs.get(0)) <= MAX_BODY_SIZE && canInline(exprs.get(0), fn)) {
+			body = exprs.get(0);
+		}
+
+		bodies.put(fn, body == null ? fn : body);
+		return body;
+	}
+
+	private boolean canInline(AstNode node, FunctionNode fn) {
+		switch (node.getType()) {
+			case LITERAL, ATOM, QUOTE -> {
+				return true;
+			}
+			case OPERATION, COMP, LOGICALOP, NOT, PREDICATE, COND, HEAD, TAIL, CONS -> {
+				for (AstNode child : node.getChildren()) {
+					if (!canInline(child, fn)) return false;
+				}
+				return true;
+			}
+			case CALL -> {
+				CallNode call = (CallNode) node;
+				if (!(call.getCallee() instanceof AtomNode callee)) return false;
+
+				FunctionNode target = unique.get(callee.getValue());
+				if (target == null || target == fn || effects.effectOf(target) != EffectAnalyzer.Effect.PURE) {
+					return false;
+				}
+				for (AstNode arg : call.getArguments()) {
+					if (!canInline(arg, fn)) return false;
+				}
+				return true;
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * Collects the parameters the body reads, in order, until it evaluates something that may fail;
+	 * returns whether it got through the whole node. Operands are evaluated from left to right.
+	 */
+	private static boolean leadingReads(AstNode node, List<String> params, List<String> reads) {
+		switch (node) {
+			case LiteralNode literal -> {
+				return true;
+			}
+			case RuntimeLiteralNode literal -> {
+				return true;
+			}
+			case QuoteNode quote -> {
+				return true;
+			}
+			case AtomNode atom -> {
+				if (!params.contains(atom.getValue())) return false;
+				reads.add(atom.getValue());
+				return true;
+			}
+			case PredicateNode predicate when "isatom".equals(predicate.getPredicate())
+					&& predicate.getArgument() instanceof AtomNode -> {
+				return true;
+			}
+			case CondNode cond -> {
+				leadingReads(cond.getChildren().get(0), params, reads);
+				return false;
+			}
+			case LogicalNode logical -> {
+				if (leadingReads(logical.getChildren().get(0), params, reads)) {
+					leadingReads(logical.getChildren().get(1), params, reads);
+				}
+				return false;
+			}
+			case CallNode call -> {
+				for (AstNode arg : call.getArguments()) {
+					if (!leadingReads(arg, params, reads)) break;
+				}
+				return false;
+			}
+			default -> {
+				for (AstNode child : node.getChildren()) {
+					if (!leadingReads(child, params, reads)) break;
+				}
+				return false;
+			}
+		}
+	}
+
+	/* isatom of a parameter is true whatever the argument, a substituted literal or quote would change that */
+	private static boolean asksIsatom(AstNode node, String param) {
+		if (node instanceof PredicateNode predicate && "isatom".equals(predicate.getPredicate())
+				&& predicate.getArgument() instanceof AtomNode atom && atom.getValue().equals(param)) {
+			return true;
+		}
+		if (node instanceof QuoteNode) return false;
+
+		for (AstNode child : node.getChildren()) {
+			if (asksIsatom(child, param)) return true;
+		}
+		return false;
+	}
+
+	private static int size(AstNode node) {
+		int size = 1;
+		for (AstNode child : node.getChildren()) {
+			size += size(child);
+		}
+		return size;
+	}
+
+	/* Copies an expression made of the nodes canInline accepts, the engines keep per node state so nothing is shared between call sites */
+	static AstNode copy(AstNode node, Map<String, AstNode> substitution) {
+		switch (node) {
+			case AtomNode atom -> {
+				AstNode arg = substitution.get(atom.getValue());
+				if (arg == null) return copyAtom(atom);
+				return arg instanceof AtomNode argAtom ? copyAtom(argAtom) : arg;
+			}
+			case LiteralNode literal -> {
+				return literal;
+			}
+			case RuntimeLiteralNode literal -> {
+				return literal;
+			}
+			case QuoteNode quote -> {
+				return quote;
+			}
+			case OperationNode operation -> {
+				ArrayList<AstNode> operands = new ArrayList<>();
+				for (AstNode operand : operation.getOperands()) operands.add(copy(operand, substitution));
+				return new OperationNode(new Token(operation.getOperatorType(), operation.getOperator(), 0), operands);
+			}
+			case ComparisonNode comparison -> {
+				return new ComparisonNode(
+						new Token(comparison.getComparisonType(), comparison.getComparison(), 0),
+						copy(comparison.getLeftElement(), substitution),
+						copy(comparison.getRightElement(), substitution));
+			}
+			case LogicalNode logical -> {
+				return new LogicalNode(logical.getOperator(),
+						copy(logical.getChildren().get(0), substitution),
+						copy(logical.getChildren().get(1), substitution));
+			}
+			case NotNode not -> {
+				return new NotNode(copy(not.getArgument(), substitution));
+			}
+			case PredicateNode predicate -> {
+				return new PredicateNode(predicate.getPredicate(), copy(predicate.getArgument(), substitution));
+			}
+			case CondNode cond -> {
+				List<AstNode> kids = cond.getChildren();
+				return new CondNode(copy(kids.get(0), substitution), copy(kids.get(1), substitution),
+						kids.size() > 2 ? copy(kids.get(2), substitution) : null);
+			}
+			case HeadNode head -> {
+				return new HeadNode(copy(head.getListExpr(), substitution));
+			}
+			case TailNode tail -> {
+				return new TailNode(copy(tail.getListExpr(), substitution));
+			}
+			case ConsNode cons -> {
+				return new ConsNode(copy(cons.getItem(), substitution), copy(cons.getList(), substitution));
+			}
+			case CallNode call -> {
+				ArrayList<AstNode> args = new ArrayList<>();
+				for (AstNode arg : call.getArguments()) args.add(copy(arg, substitution));
+				return new CallNode(copyAtom((AtomNode) call.getCallee()), args);
+			}
+			default -> throw new IllegalStateException("cannot inline " + node);
+		}
+	}
+
+	private static AtomNode copyAtom(AtomNode atom) {
+		return new AtomNode(new Token(atom.getTokenType(), atom.getValue(), 0));
+	}
+}
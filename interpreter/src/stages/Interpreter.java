@@ -1,22 +1,60 @@
 package stages;
 
 import models.nodes.*;
+import models.symbol_table.Frame;
 import models.symbol_table.SymbolTable;
+import models.values.FList;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class Interpreter {
-	private final SymbolTable symbolTable;
-	private final boolean globalScope;
+	/* the environment of the code being run; calls and progs swap it and put it back when they are done */
+	private SymbolTable symbolTable;
+	private boolean globalScope;
+	private final ResultSink out;
+	/*
+	 * Status register for return, break and tail calls, which travel as values: the one produced last.
+	 * A result is such a signal exactly when it is this object, so loops, progs and calls compare one
+	 * reference instead of looking at the type of every result. It starts out as an object no code produces.
+	 */
+	private Object completion = new Object();
+
+	private static final class TailCall {
+		private final AstNode[] args;
+
+		private TailCall(AstNode[] args) {
+			this.args = args;
+		}
+	}
 
 	private Object visit(AstNode node) {
 		return node.accept(this);
 	}
 
 	public Interpreter(SymbolTable symbolTable, boolean globalScope) {
+		this(symbolTable, globalScope, ResultSink.printing(System.err));
+	}
+
+	/* out receives the results of the top level forms when globalScope is set */
+	public Interpreter(SymbolTable symbolTable, boolean globalScope, ResultSink out) {
 		this.symbolTable = symbolTable;
 		this.globalScope = globalScope;
+		this.out = out;
+	}
+
+	/* Evaluates node in table, then returns to the environment the interpreter had before */
+	public Object evaluate(AstNode node, SymbolTable table, boolean global) {
+		SymbolTable outerTable = symbolTable;
+		boolean outerGlobal = globalScope;
+		symbolTable = table;
+		globalScope = global;
+		try {
+			return visit(node);
+		} finally {
+			symbolTable = outerTable;
+			globalScope = outerGlobal;
+		}
 	}
 
 	public Object visitProgNode(ProgNode progNode) {
@@ -24,27 +62,21 @@ public class Interpreter {
 
 		for (AstNode childNode : progNode.getChildren()) {
 
-			if (childNode instanceof ReturnNode returnNode) {
-				result = visit(returnNode.getValue());
-
-				if (globalScope && shouldPrintResult(childNode)) {
-					System.err.println(result);
-				}
-
-				return result;
-			}
-
-			if (childNode instanceof ProgNode) {
-				Interpreter local = new Interpreter(symbolTable, false);
-				result = local.visitProgNode((ProgNode) childNode);
+			if (globalScope && childNode instanceof ProgNode) {
+				result = evaluate(childNode, symbolTable, false);
 			} else {
 				result = visit(childNode);
 			}
 
+			// a return written directly in the prog ends it with its value
+			if (result == childNode && childNode instanceof ReturnNode returnNode) {
+				return visit(returnNode.getValue());
+			}
+
 			if (globalScope && shouldPrintResult(childNode)) {
 				NodeType t = childNode.getType();
 				if (result != null || t == NodeType.ATOM || t == NodeType.QUOTE) {
-					System.err.println(result);
+					out.accept(result);
 				}
 			}
 		}
@@ -63,7 +95,10 @@ public class Interpreter {
 
 	public Object visitAtomNode(AtomNode atomNode) {
 		String name = atomNode.getValue();
-		AstNode bound = symbolTable.find(name);
+		int slot = atomNode.getSlot();
+		AstNode bound = (slot >= 0 && symbolTable instanceof Frame frame)
+				? frame.lookup(slot, name)
+				: symbolTable.find(name);
 
 		if (bound == null) {
 			throw new RuntimeException("INTERPRETATION ERROR: UNDEFINED VARIABLE " + name);
@@ -85,33 +120,18 @@ public class Interpreter {
 	}
 
 	public Object visitLiteralNode(LiteralNode literalNode) {
-		String value = literalNode.getValue();
-
-		switch (value) {
-			case "true" -> {
-				return Boolean.TRUE;
-			}
-			case "false" -> {
-				return Boolean.FALSE;
-			}
-			case "null" -> {
-				return null;
-			}
-		}
-
-		try {
-			if (value.contains(".")) {
-				return Double.parseDouble(value);
-			} else {
-				return Integer.parseInt(value);
-			}
-		} catch (NumberFormatException e) {
-			return value;
-		}
+		return literalNode.getRuntimeValue();
 	}
 
 
 	public Object visitOperationNode(OperationNode operationNode) {
+		ArrayList<AstNode> operands = operationNode.getOperands();
+		if (operands.size() == 2) {
+			Object left = visit(operands.get(0));
+			Object right = visit(operands.get(1));
+			return Builtins.evalBinaryOperation(operationNode.getOperatorType(), left, right);
+		}
+
 		String operator = operationNode.getOperator();
 		ArrayList<Object> evaluatedOperands = new ArrayList<>();
 
@@ -119,7 +139,7 @@ public class Interpreter {
 			evaluatedOperands.add(visit(operand));
 		}
 
-		return evalOperation(operator, evaluatedOperands);
+		return Builtins.evalOperation(operator, evaluatedOperands);
 	}
 
 	public Object visitPredicateNode(PredicateNode node) {
@@ -136,7 +156,7 @@ public class Interpreter {
 		}
 
 		Object value = visit(argNode);
-		return evalPredicate(predicate, value);
+		return Builtins.evalPredicate(predicate, value);
 	}
 
 	private boolean isAtomSyntax(AstNode node) {
@@ -184,11 +204,9 @@ public class Interpreter {
 			for (AstNode node : whileNode.getBody()) {
 				Object result = visit(node);
 
-				if (result instanceof BreakNode) {
-					return null;
-				}
-				if (result instanceof ReturnNode) {
-					return result;
+				// a break ends the loop, a return leaves it on its way to the call
+				if (result == completion) {
+					return result instanceof BreakNode ? null : result;
 				}
 			}
 		}
@@ -202,78 +220,35 @@ public class Interpreter {
 
 	public Object visitNotNode(NotNode notNode) {
 		Object value = visit(notNode.getArgument());
-		return evalNot(value);
+		return Builtins.evalNot(value);
 	}
 
 	public Object visitComparisonNode(ComparisonNode comparisonNode) {
 		Object leftVal = visit(comparisonNode.getLeftElement());
 		Object rightVal = visit(comparisonNode.getRightElement());
-		String op = comparisonNode.getComparison();
-		return evalComparison(op, leftVal, rightVal);
+
+		return Builtins.evalBinaryComparison(comparisonNode.getComparisonType(), leftVal, rightVal);
 	}
 
 	public Object visitLogicalNode(LogicalNode logicalNode) {
 		Object leftVal = visit(logicalNode.getChildren().get(0));
 		Object rightVal = visit(logicalNode.getChildren().get(1));
 		String operator = logicalNode.getOperator();
-		return evalLogical(operator, leftVal, rightVal);
-	}
-
-
-	private boolean asBoolean(Object value, String side) {
-		if (value instanceof Boolean b) {
-			return b;
-		}
-		if (value instanceof Number n) {
-			return n.doubleValue() != 0.0;
-		}
-		if (value instanceof String s) {
-			if (s.equals("true") || s.equals("false")) {
-				return Boolean.parseBoolean(s);
-			}
-			if (s.equals("0")) return false;
-			if (s.equals("1")) return true;
-		}
-		throw new RuntimeException(
-				"INTERPRETATION ERROR: LOGICAL " + side + " OPERAND IS NOT BOOLEAN: " + value
-		);
+		return Builtins.evalLogical(operator, leftVal, rightVal);
 	}
 
 
 	public Object visitListNode(ListNode listNode) {
-		List<Object> values = new ArrayList<>();
-		for (AstNode element : listNode.getElements()) {
-			values.add(visit(element));
+		ArrayList<AstNode> elements = listNode.getElements();
+		Object[] values = new Object[elements.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = visit(elements.get(i));
 		}
-		return values;
+		return FList.of(values);
 	}
 
 	public Object visitQuoteNode(QuoteNode quoteNode) {
-		return evalQuoted(quoteNode.getQuotedExpr());
-	}
-
-	private Object evalQuoted(AstNode node) {
-		switch (node) {
-			case ListNode listNode -> {
-				List<Object> result = new ArrayList<>();
-				for (AstNode elem : listNode.getElements()) {
-					result.add(evalQuoted(elem));
-				}
-				return result;
-			}
-			case LiteralNode lit -> {
-				return visitLiteralNode(lit);
-			}
-			case AtomNode atom -> {
-				return atom.getValue();
-			}
-			case QuoteNode q -> {
-				return evalQuoted(q.getQuotedExpr());
-			}
-			case null, default -> {
-				return node;
-			}
-		}
+		return Builtins.evalQuote(quoteNode);
 	}
 
 	public Object visitEvalNode(EvalNode evalNode) {
@@ -306,33 +281,30 @@ public class Interpreter {
 			return null;
 		}
 
-		Object head = list.get(0);
-
-		String funcName;
+		EvalForm form = EvalForm.of(list);
+		if (form == null) {
+			Object head = list.get(0);
+			if (!(head instanceof AstNode ast)) {
+				throw new RuntimeException("INTERPRETATION ERROR: CANNOT EVAL LIST: INVALID HEAD " + head);
+			}
 
-		if (head instanceof String s) {
-			funcName = s;
-		} else if (head instanceof AstNode ast) {
 			Object fnValue = visit(ast);
-			if (fnValue instanceof String s2) {
-				funcName = s2;
-			} else {
+			if (!(fnValue instanceof String funcName)) {
 				throw new RuntimeException("INTERPRETATION ERROR: CANNOT EVAL LIST: INVALID HEAD " + fnValue);
 			}
-		} else {
-			throw new RuntimeException("INTERPRETATION ERROR: CANNOT EVAL LIST: INVALID HEAD " + head);
+			form = EvalForm.of(funcName, list);
 		}
 
-		List<Object> args = new ArrayList<>();
+		return evalForm(form);
+	}
 
-		for (int i = 1; i < list.size(); i++) {
-			Object arg = list.get(i);
+	private Object evalForm(EvalForm form) {
+		Object[] arguments = form.getArguments();
+		List<Object> args = new ArrayList<>(arguments.length);
 
-			if (arg instanceof List<?> subList) {
-				if (!subList.isEmpty() && subList.get(0) instanceof String) {
-					arg = evalListAsProgram(subList);
-				} else {
-				}
+		for (Object arg : arguments) {
+			if (arg instanceof EvalForm call) {
+				arg = evalForm(call);
 			} else if (arg instanceof AstNode astArg) {
 				arg = visit(astArg);
 			} else if (arg instanceof String atomName) {
@@ -341,7 +313,7 @@ public class Interpreter {
 			args.add(arg);
 		}
 
-		return applyFunctionOrSpecialForm(funcName, args);
+		return applyFunctionOrSpecialForm(form, args);
 	}
 
 	private void checkArity(String funcName, List<Object> args, int expected) {
@@ -352,48 +324,56 @@ public class Interpreter {
 		}
 	}
 
-	private Object applyFunctionOrSpecialForm(String funcName, List<Object> args) {
-		switch (funcName) {
-			case "plus", "minus", "times", "divide" -> {
-				return evalOperation(funcName, args);
+	private Object applyFunctionOrSpecialForm(EvalForm form, List<Object> args) {
+		String funcName = form.getName();
+
+		switch (form.getKind()) {
+			case OPERATION -> {
+				return Builtins.evalOperation(funcName, args);
 			}
 
-			case "head" -> {
+			case HEAD -> {
 				checkArity(funcName, args, 1);
-				return evalHead(args.get(0));
+				return Builtins.evalHead(args.get(0));
 			}
-			case "tail" -> {
+			case TAIL -> {
 				checkArity(funcName, args, 1);
-				return evalTail(args.get(0));
+				return Builtins.evalTail(args.get(0));
 			}
-			case "cons" -> {
+			case CONS -> {
 				checkArity(funcName, args, 2);
-				return evalCons(args.get(0), args.get(1));
+				return Builtins.evalCons(args.get(0), args.get(1));
 			}
 
-			case "equal", "nonequal", "less", "lesseq", "greater", "greatereq" -> {
+			case COMPARISON -> {
 				checkArity(funcName, args, 2);
-				return evalComparison(funcName, args.get(0), args.get(1));
+				return Builtins.evalComparison(funcName, args.get(0), args.get(1));
 			}
 
-			case "isint", "isreal", "isbool", "isnull", "isatom", "islist" -> {
+			case PREDICATE -> {
 				checkArity(funcName, args, 1);
-				return evalPredicate(funcName, args.get(0));
+				return Builtins.evalPredicate(funcName, args.get(0));
 			}
 
-			case "and", "or", "xor", "nor", "nand", "xnor" -> {
+			case LOGICAL -> {
 				checkArity(funcName, args, 2);
-				return evalLogical(funcName, args.get(0), args.get(1));
+				return Builtins.evalLogical(funcName, args.get(0), args.get(1));
 			}
-			case "not" -> {
+			case NOT -> {
 				checkArity(funcName, args, 1);
-				return evalNot(args.get(0));
+				return Builtins.evalNot(args.get(0));
 			}
 
-			case "eval" -> {
+			case EVAL -> {
 				checkArity(funcName, args, 1);
 				return evalValue(args.get(0));
 			}
+			case LIST -> {
+				checkArity(funcName, args, ListOpNode.arity(funcName));
+				return Builtins.evalListOperation(funcName, args.toArray(), this::apply);
+			}
+			case CALL -> {
+			}
 		}
 
 		AstNode funcNode = symbolTable.find(funcName);
@@ -403,13 +383,16 @@ public class Interpreter {
 
 		ArrayList<String> paramNames;
 		AstNode body;
+		String[] layout;
 
 		if (funcNode instanceof FunctionNode fn) {
 			paramNames = fn.getParameters();
 			body = fn.getBody();
+			layout = fn.getFrameLayout();
 		} else if (funcNode instanceof LambdaNode ln) {
 			paramNames = ln.getParameters();
 			body = ln.getBody();
+			layout = ln.getFrameLayout();
 		} else {
 			throw new RuntimeException("INTERPRETATION ERROR: " + funcName + " is not a function or lambda");
 		}
@@ -421,48 +404,159 @@ public class Interpreter {
 			throw new RuntimeException("INTERPRETATION ERROR: TOO MANY ARGUMENTS FOR " + funcName);
 		}
 
-		SymbolTable functionTable = new SymbolTable(symbolTable);
-
+		AstNode[] argNodes = new AstNode[paramNames.size()];
 		for (int i = 0; i < paramNames.size(); i++) {
-			String paramName = paramNames.get(i);
 			Object argVal = args.get(i);
 
-			AstNode argNode;
 			if (argVal instanceof AstNode ast) {
-				argNode = ast;
+				argNodes[i] = ast;
 			} else {
-				argNode = new RuntimeLiteralNode(argVal);
+				argNodes[i] = new RuntimeLiteralNode(argVal);
 			}
-			functionTable.define(paramName, argNode);
 		}
 
-		Interpreter funcInterpreter = new Interpreter(functionTable, false);
-		return funcInterpreter.visit(body);
+		if (funcNode instanceof FunctionNode fn) {
+			return invokeFunction(fn, args.toArray(), argNodes);
+		}
+
+		return invoke(paramNames, body, layout, argNodes);
+	}
+
+	/* Calls a named function, going through its memo cache and compiled code when it has them */
+	private Object invokeFunction(FunctionNode fn, Object[] argValues, AstNode[] argNodes) {
+		MemoCache memo = fn.getMemoCache();
+		Object result = memo == null ? MemoCache.MISSING : memo.get(argValues);
+		if (result != MemoCache.MISSING) {
+			return result;
+		}
+
+		result = fn.getNumericFunction() == null ? null : BytecodeCompiler.invoke(fn, argValues, symbolTable);
+		if (result == null) {
+			result = invoke(fn.getParameters(), fn.getBody(), fn.getFrameLayout(), argNodes);
+		}
+
+		if (memo != null) {
+			memo.put(argValues, result);
+		}
+		return result;
+	}
+
+	private Object invoke(ArrayList<String> paramNames, AstNode body, String[] layout, AstNode[] args) {
+		SymbolTable callerTable = symbolTable;
+		boolean callerGlobal = globalScope;
+		symbolTable = Frame.forCall(callerTable, layout, paramNames, args);
+		globalScope = false;
+
+		try {
+			Object result = visit(body);
+
+			while (result == completion) {
+				// self calls in tail position hand their arguments back instead of recursing
+				if (result instanceof TailCall tailCall) {
+					if (symbolTable instanceof Frame frame) {
+						for (int i = 0; i < tailCall.args.length; i++) {
+							frame.set(i, tailCall.args[i]);
+						}
+					} else {
+						symbolTable = Frame.forCall(symbolTable, null, paramNames, tailCall.args);
+					}
+					result = visit(body);
+				} else if (result instanceof ReturnNode returnNode) {
+					return visit(returnNode.getValue());
+				} else {
+					// a break leaves the call as its value
+					break;
+				}
+			}
+
+			return result;
+		} finally {
+			symbolTable = callerTable;
+			globalScope = callerGlobal;
+		}
 	}
 
 
 	public Object visitReturnNode(ReturnNode returnNode) {
+		completion = returnNode;
 		return returnNode;
 	}
 
 	public Object visitBreakNode(BreakNode breakNode) {
+		completion = breakNode;
 		return breakNode;
 	}
 
 	public Object visitHeadNode(HeadNode headNode) {
 		Object value = visit(headNode.getListExpr());
-		return evalHead(value);
+		return Builtins.evalHead(value);
 	}
 
 	public Object visitTailNode(TailNode tailNode) {
 		Object value = visit(tailNode.getListExpr());
-		return evalTail(value);
+		return Builtins.evalTail(value);
 	}
 
 	public Object visitConsNode(ConsNode consNode) {
 		Object head = visit(consNode.getItem());
 		Object tailVal = visit(consNode.getList());
-		return evalCons(head, tailVal);
+		return Builtins.evalCons(head, tailVal);
+	}
+
+
+	public Object visitListOpNode(ListOpNode node) {
+		String operation = node.getOperation();
+		List<AstNode> argExprs = node.getArguments();
+		Object[] args = new Object[argExprs.size()];
+
+		for (int i = 0; i < args.length; i++) {
+			AstNode arg = argExprs.get(i);
+			// an operator given as the function stands for itself
+			if (i == 0 && ListOpNode.takesFunction(operation)
+					&& arg instanceof AtomNode atom && Builtins.isOperatorName(atom.getValue())) {
+				args[i] = atom.getValue();
+			} else {
+				args[i] = visit(arg);
+			}
+		}
+
+		if (node.runsInParallel(args[0])) {
+			SymbolTable table = symbolTable;
+			return ParallelLists.eval(operation, args, this::apply,
+					() -> new Interpreter(new SymbolTable(table), false, out)::apply);
+		}
+		return Builtins.evalListOperation(operation, args, this::apply);
+	}
+
+	/* Calls a function or lambda value with arguments that are already evaluated */
+	private Object apply(Object fnValue, Object[] argValues) {
+		ArrayList<String> paramNames;
+		if (fnValue instanceof LambdaNode lambda) {
+			paramNames = lambda.getParameters();
+		} else if (fnValue instanceof FunctionNode func) {
+			paramNames = func.getParameters();
+		} else {
+			throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
+		}
+
+		if (argValues.length != paramNames.size()) {
+			throw new RuntimeException("INTERPRETATION ERROR: FUNCTION EXPECTED " +
+					paramNames.size() + " ARGS, got " + argValues.length);
+		}
+
+		AstNode[] argNodes = new AstNode[argValues.length];
+		for (int i = 0; i < argValues.length; i++) {
+			argNodes[i] = (argValues[i] instanceof AstNode ast)
+					? ast
+					: new RuntimeLiteralNode(argValues[i]);
+		}
+
+		if (fnValue instanceof FunctionNode func) {
+			return invokeFunction(func, argValues, argNodes);
+		}
+
+		LambdaNode lambda = (LambdaNode) fnValue;
+		return invoke(paramNames, lambda.getBody(), lambda.getFrameLayout(), argNodes);
 	}
 
 
@@ -484,7 +578,12 @@ public class Interpreter {
 			}
 		}
 
-		symbolTable.define(name, toStore);
+		int slot = setqNode.getSlot();
+		if (slot >= 0 && symbolTable instanceof Frame frame) {
+			frame.set(slot, toStore);
+		} else {
+			symbolTable.define(name, toStore);
+		}
 		return null;
 	}
 
@@ -503,7 +602,7 @@ public class Interpreter {
 					for (AstNode arg : node.getArguments()) {
 						evaluatedOperands.add(visit(arg));
 					}
-					return evalOperation(s, evaluatedOperands);
+					return Builtins.evalOperation(s, evaluatedOperands);
 				}
 				default ->
 						throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
@@ -512,13 +611,16 @@ public class Interpreter {
 
 		ArrayList<String> paramNames;
 		AstNode body;
+		String[] layout;
 
 		if (fnValue instanceof LambdaNode lambda) {
 			paramNames = lambda.getParameters();
 			body = lambda.getBody();
+			layout = lambda.getFrameLayout();
 		} else if (fnValue instanceof FunctionNode func) {
 			paramNames = func.getParameters();
 			body = func.getBody();
+			layout = func.getFrameLayout();
 		} else {
 			throw new RuntimeException("INTERPRETATION ERROR: EXPRESSION DOES NOT EVALUATE TO A FUNCTION");
 		}
@@ -529,172 +631,30 @@ public class Interpreter {
 					paramNames.size() + " ARGS, got " + argExprs.size());
 		}
 
-		SymbolTable functionTable = new SymbolTable(symbolTable);
+		Object[] argValues = new Object[paramNames.size()];
+		AstNode[] argNodes = new AstNode[paramNames.size()];
 		for (int i = 0; i < paramNames.size(); i++) {
-			String paramName = paramNames.get(i);
 			AstNode argAst = argExprs.get(i);
 
 			Object argVal = visit(argAst);
-			AstNode stored = (argVal instanceof AstNode ast)
+			argValues[i] = argVal;
+			argNodes[i] = (argVal instanceof AstNode ast)
 					? ast
 					: new RuntimeLiteralNode(argVal);
-
-			functionTable.define(paramName, stored);
 		}
 
-		Interpreter funcInterpreter = new Interpreter(functionTable, false);
-		Object result = funcInterpreter.visit(body);
-
-		if (result instanceof ReturnNode rn) {
-			return funcInterpreter.visit(rn.getValue());
+		if (node.getTailCallOf() == fnValue) {
+			completion = new TailCall(argNodes);
+			return completion;
 		}
 
-		return result;
-	}
-
-
-	private Object evalPredicate(String predicate, Object value) {
-		return switch (predicate) {
-			case "isint" -> value instanceof Integer;
-			case "isreal" -> value instanceof Double || value instanceof Integer;
-			case "isbool" -> value instanceof Boolean;
-			case "isnull" -> value == null;
-			case "islist" -> value instanceof java.util.List<?>;
-			default -> value != null;
-		};
-	}
-
-	private Object evalComparison(String op, Object leftVal, Object rightVal) {
-		if (leftVal instanceof Boolean && rightVal instanceof Boolean) {
-			boolean l = (Boolean) leftVal;
-			boolean r = (Boolean) rightVal;
-			return switch (op) {
-				case "equal" -> l == r;
-				case "nonequal" -> l != r;
-				default -> throw new RuntimeException(
-						"INTERPRETATION ERROR: BOOLEAN COMPARISON ONLY SUPPORTS equal/nonequal, got " + op
-				);
-			};
-		}
-
-		double l = ((Number) leftVal).doubleValue();
-		double r = ((Number) rightVal).doubleValue();
-
-		return switch (op) {
-			case "equal" -> l == r;
-			case "nonequal" -> l != r;
-			case "less" -> l < r;
-			case "lesseq" -> l <= r;
-			case "greater" -> l > r;
-			case "greatereq" -> l >= r;
-			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN COMPARISON OPERATOR " + op);
-		};
-	}
-
-	private Object evalLogical(String operator, Object leftVal, Object rightVal) {
-		boolean l = asBoolean(leftVal, "LEFT");
-		boolean r = asBoolean(rightVal, "RIGHT");
-
-		return switch (operator) {
-			case "and" -> l && r;
-			case "or" -> l || r;
-			case "xor" -> (l || r) && !(l && r);
-			case "nor" -> !(l || r);
-			case "nand" -> !(l && r);
-			case "xnor" -> !((l || r) && !(l && r));
-			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN LOGICAL OPERATOR " + operator);
-		};
-	}
-
-	private Object evalNot(Object value) {
-		boolean v = asBoolean(value, "ARG");
-		return !v;
-	}
-
-	private Object evalHead(Object value) {
-		if (!(value instanceof java.util.List<?> list)) {
-			throw new RuntimeException("INTERPRETATION ERROR: HEAD EXPECTED LIST");
-		}
-		if (list.isEmpty()) {
-			throw new RuntimeException("INTERPRETATION ERROR: EMPTY LIST");
-		}
-		return list.get(0);
-	}
-
-	private Object evalTail(Object value) {
-		if (!(value instanceof java.util.List<?> list)) {
-			throw new RuntimeException("INTERPRETATION ERROR: TAIL EXPECTED LIST");
-		}
-		if (list.isEmpty()) {
-			throw new RuntimeException("INTERPRETATION ERROR: EMPTY LIST");
+		if (fnValue instanceof FunctionNode func) {
+			return invokeFunction(func, argValues, argNodes);
 		}
-		return new ArrayList<>(list.subList(1, list.size()));
-	}
 
-	private Object evalCons(Object head, Object tailVal) {
-		java.util.List<Object> result = new ArrayList<>();
-		result.add(head);
-		if (tailVal instanceof java.util.List<?> tailList) {
-			result.addAll(tailList);
-		} else if (tailVal != null) {
-			throw new RuntimeException("INTERPRETATION ERROR: CONS TAIL IS NOT A LIST");
-		}
-		return result;
+		return invoke(paramNames, body, layout, argNodes);
 	}
 
-	private Number evalOperation(String operator, List<Object> operands) {
-		List<Double> numericOperands = operands.stream()
-				.map(o -> ((Number) o).doubleValue())
-				.toList();
-
-		switch (operator) {
-			case "plus" -> {
-				double result = numericOperands.stream().mapToDouble(Double::doubleValue).sum();
-
-				if (isInteger(result)) {
-					return (int) result;
-				} else {
-					return result;
-				}
-			}
-			case "minus" -> {
-				double result = numericOperands.get(0);
-				for (int i = 1; i < numericOperands.size(); i++) {
-					result -= numericOperands.get(i);
-				}
-				if (isInteger(result)) {
-					return (int) result;
-				} else return result;
-			}
-			case "times" -> {
-				double result = 1.0;
-				for (Double operand : numericOperands) {
-					result *= operand;
-				}
-				if (isInteger(result)) {
-					return (int) result;
-				} else return result;
-			}
-			case "divide" -> {
-				double result = numericOperands.get(0);
-				for (int i = 1; i < numericOperands.size(); i++) {
-					double divisor = numericOperands.get(i);
-					if (divisor == 0) {
-						throw new RuntimeException("INTERPRETATION ERROR: DIVISION BY ZERO");
-					}
-					result /= divisor;
-				}
-				if (isInteger(result)) {
-					return (int) result;
-				} else return result;
-			}
-			default -> throw new RuntimeException("INTERPRETATION ERROR: UNKNOWN OPERATOR " + operator);
-		}
-	}
-
-	private boolean isInteger(double value) {
-		return value == Math.floor(value);
-	}
 
 	private Object evalCondBranch(AstNode branch) {
 		if (branch == null) return null;
@@ -1,22 +1,35 @@
 package stages;
 
 import models.token.Token;
+import models.token.TokenSource;
 import models.token.TokenType;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 
-public class Lexer {
+public class Lexer implements TokenSource {
+    private static final int BUFFER_SIZE = 8192;
+
     private ArrayList<Token> tokens;
-    private String input;
+    private Reader reader;
+    private char[] buffer;
     private int pos;
-    private int line;
     private int length;
+    private int line;
 
     public Lexer(String input) {
-        this.input = input;
+        this(new StringReader(input));
+    }
+
+    /* Reads the input through a fixed size buffer, so it never has to be held in memory as a whole */
+    public Lexer(Reader reader) {
+        this.reader = reader;
+        buffer = new char[BUFFER_SIZE];
         pos = 0;
+        length = 0;
         line = 0;
-        length = input.length();
         tokens = new ArrayList<>();
     }
 
@@ -25,35 +38,58 @@ public class Lexer {
     }
 
     public void parseTokens() throws Exception {
-        while (pos < length) {
-            char cur = input.charAt(pos);
+        Token token;
+        while ((token = nextToken()) != null) {
+            tokens.add(token);
+        }
+    }
+
+    @Override
+    public Token nextToken() throws Exception {
+        int next;
+        while ((next = peekChar()) >= 0) {
+            char cur = (char) next;
 
             if (cur == '(' || cur == ')' || cur == '\'' || cur == '\n') {
+                pos++;
                 if (cur == '\n') {
                     line++;
                 } else {
                     String curString = String.valueOf(cur);
-                    tokens.add(new Token(TokenType.fromString(curString), curString, line));
+                    return new Token(TokenType.fromString(curString), curString, line);
                 }
-                pos++;
             } else {
                 if (Character.isWhitespace(cur)) {
                     pos++;
                 } else if (Character.isDigit(cur) || cur == '+' || cur == '-') {
-                    tokens.add(parseNumber());
+                    return parseNumber();
                 } else if (Character.isLetter(cur)) {
-                    tokens.add(parseKeyword());
+                    return parseKeyword();
                 } else {
                     throw new Exception("LEXICAL ERROR: UNKNOWN CHARACTER '" + cur + "' at line " + line);
                 }
             }
         }
+        return null;
+    }
+
+    /* Current character without consuming it, -1 at the end of the input */
+    private int peekChar() throws IOException {
+        if (pos == length) {
+            pos = 0;
+            length = Math.max(reader.read(buffer, 0, buffer.length), 0);
+            if (length == 0) {
+                return -1;
+            }
+        }
+        return buffer[pos];
     }
 
-    private Token parseKeyword() {
+    private Token parseKeyword() throws IOException {
         StringBuilder builder = new StringBuilder();
-        while (pos < length) {
-            char cur = input.charAt(pos);
+        int next;
+        while ((next = peekChar()) >= 0) {
+            char cur = (char) next;
             if (Character.isLetterOrDigit(cur) || cur == '_') {
                 builder.append(cur);
                 pos++;
@@ -70,8 +106,9 @@ public class Lexer {
 
         boolean isFloat = false;
 
-        while (pos < length) {
-            char cur = input.charAt(pos);
+        int next;
+        while ((next = peekChar()) >= 0) {
+            char cur = (char) next;
 
             if (Character.isDigit(cur) || cur == '-' || cur == '+') {
                 if (cur != '+') {
@@ -87,8 +124,9 @@ public class Lexer {
             pos++;
         }
 
-        if (pos < length && Character.isLetter(input.charAt(pos))) {
-            throw new Exception("LEXICAL ERROR: UNEXPECTED CHARACTER '" + input.charAt(pos) + "' at line " + line);
+        next = peekChar();
+        if (next >= 0 && Character.isLetter((char) next)) {
+            throw new Exception("LEXICAL ERROR: UNEXPECTED CHARACTER '" + (char) next + "' at line " + line);
         }
 
         String numberString = builder.toString();
@@ -0,0 +1,263 @@
+package stages;
+
+import models.nodes.*;
+import models.token.Token;
+import models.token.TokenType;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Moves pure expressions that do not depend on anything a while loop assigns out of the loop:
+ * the value is computed once into a temporary assigned right before the loop and the loop reads that instead.
+ *
+ * Only expressions the loop evaluates anyway are hoisted, and only when everything evaluated before
+ * them is a literal, a quote or a name: reordering those changes nothing, names were checked by the parser.
+ * Those the first check of the condition reaches are assigned before the loop. Those the body reaches
+ * are assigned by a guard, a copy of the loop that checks the condition, assigns them and breaks,
+ * so they are only computed when the body runs; this needs a condition that is pure and may be checked twice.
+ * Copies of a hoisted expression anywhere else in the body read the temporary too.
+ * Calls are only hoisted when they go to pure top level functions whose name is bound nowhere else,
+ * like the inliner's. Loops that use eval are left alone, and only loops that are statements
+ * of a prog get a temporary, the temporaries are named so that no program can refer to them.
+ */
+final class LoopInvariantMotion {
+	private static final String TEMPORARY_PREFIX = "#loop";
+
+	private final EffectAnalyzer effects;
+	private final PrintStream log;
+
+	/* top level functions whose name is bound nowhere else */
+	private final Map<String, FunctionNode> unique = new HashMap<>();
+	private int temporaries;
+
+	LoopInvariantMotion(EffectAnalyzer effects, PrintStream log) {
+		this.effects = effects;
+		this.log = log;
+	}
+
+	AstNode hoist(AstNode root) {
+		if (root instanceof ProgNode) {
+			Map<String, Integer> bindings = new HashMap<>();
+			Inliner.countBindings(root, bindings);
+			for (AstNode form : root.getChildren()) {
+				if (form instanceof FunctionNode fn && bindings.get(fn.getFunctionName()) == 1) {
+					unique.put(fn.getFunctionName(), fn);
+				}
+			}
+		}
+
+		visit(root);
+		return root;
+	}
+
+	private void visit(AstNode node) {
+		if (node == null) return;
+
+		switch (node) {
+			case QuoteNode quote -> {
+			}
+			case FunctionNode fn -> visit(fn.getBody());
+			case LambdaNode lambda -> visit(lambda.getBody());
+			default -> {
+				for (AstNode child : node.getChildren()) {
+					visit(child);
+				}
+				if (node instanceof ProgNode prog) {
+					hoistLoops(prog);
+				}
+			}
+		}
+	}
+
+	private void hoistLoops(ProgNode prog) {
+		List<AstNode> kids = prog.getChildren();
+		List<AstNode> statements = new ArrayList<>(kids.size());
+		boolean changed = false;
+
+		for (AstNode stmt : kids) {
+			if (stmt instanceof WhileNode loop) {
+				List<AstNode> hoisted = hoistLoop(loop);
+				statements.addAll(hoisted);
+				changed |= !hoisted.isEmpty();
+			}
+			statements.add(stmt);
+		}
+
+		if (changed) {
+			kids.clear();
+			kids.addAll(statements);
+		}
+	}
+
+	/* Returns the statements that go before the loop */
+	private List<AstNode> hoistLoop(WhileNode loop) {
+		Set<String> assigned = new HashSet<>();
+		if (ConstantPropagator.assigns(loop, assigned)) return List.of();
+
+		// temporaries by the printed form of the expression they hold
+		Map<String, SetqNode> hoisted = new LinkedHashMap<>();
+		hoistInOrder(loop, 0, assigned, hoisted, true);
+		List<AstNode> statements = new ArrayList<>(hoisted.values());
+
+		List<AstNode> kids = loop.getChildren();
+		if (dependsOnlyOn(loop.getCondition(), Set.of())) {
+			ArrayList<AstNode> guard = new ArrayList<>();
+			boolean clean = true;
+			for (int i = 1; i < kids.size() && clean; i++) {
+				clean = hoistInOrder(loop, i, assigned, hoisted, clean);
+			}
+			for (SetqNode temporary : hoisted.values()) {
+				if (!statements.contains(temporary)) guard.add(temporary);
+			}
+			if (!guard.isEmpty()) {
+				guard.add(new BreakNode());
+				statements.add(new WhileNode(Inliner.copy(loop.getCondition(), Map.of()), guard));
+			}
+		}
+		if (hoisted.isEmpty()) return List.of();
+
+		for (int i = 1; i < kids.size(); i++) {
+			replaceCopies(loop, i, hoisted);
+		}
+
+		for (SetqNode temporary : hoisted.values()) {
+			if (log != null) log.println("Successfully hoisted loop invariant: " + temporary.getValue() + ". Stored in: " + temporary.getName());
+		}
+		return statements;
+	}
+
+	/*
+	 * Walks the child of parent at index in evaluation order and hoists invariant expressions reached
+	 * while clean, that is while everything evaluated before them could be reordered freely.
+	 * Returns whether the walk is still clean after the child.
+	 */
+	private boolean hoistInOrder(AstNode parent, int index, Set<String> assigned, Map<String, SetqNode> hoisted, boolean clean) {
+		AstNode node = parent.getChildren().get(index);
+		String key = node.toString();
+
+		SetqNode temporary = hoisted.get(key);
+		if (temporary == null && clean && isInvariant(node, assigned)) {
+			temporary = new SetqNode(TEMPORARY_PREFIX + temporaries++, node);
+			hoisted.put(key, temporary);
+		}
+		if (temporary != null) {
+			parent.replaceChild(index, temporaryRead(temporary));
+			return clean;
+		}
+
+		switch (node.getType()) {
+			case LITERAL, ATOM, QUOTE -> {
+				return clean;
+			}
+			case OPERATION, COMP, NOT, HEAD, TAIL, CONS -> {
+				for (int i = 0; i < node.getChildren().size(); i++) {
+					clean = hoistInOrder(node, i, assigned, hoisted, clean);
+				}
+			}
+			case LOGICALOP -> {
+				clean = hoistInOrder(node, 0, assigned, hoisted, clean);
+				hoistInOrder(node, 1, assigned, hoisted, clean);
+			}
+			case PREDICATE -> {
+				if (!isSyntactic(node)) hoistInOrder(node, 0, assigned, hoisted, clean);
+			}
+			case CALL -> {
+				// the callee is looked up before the arguments
+				clean &= node.getChildren().get(0) instanceof AtomNode;
+				for (int i = 1; i < node.getChildren().size(); i++) {
+					clean = hoistInOrder(node, i, assigned, hoisted, clean);
+				}
+			}
+			case COND -> {
+				// only the test is certain to run
+				hoistInOrder(node, 0, assigned, hoisted, clean);
+			}
+			case SETQ -> hoistInOrder(node, 0, assigned, hoisted, clean);
+			default -> {
+			}
+		}
+
+		// the operation itself may fail or have effects, so nothing after it moves before it
+		return false;
+	}
+
+	private void replaceCopies(AstNode parent, int index, Map<String, SetqNode> hoisted) {
+		AstNode node = parent.getChildren().get(index);
+
+		switch (node.getType()) {
+			case LITERAL, ATOM, QUOTE, FUNC, LAMBDA -> {
+				return;
+			}
+			default -> {
+			}
+		}
+
+		SetqNode temporary = hoisted.get(node.toString());
+		if (temporary != null) {
+			parent.replaceChild(index, temporaryRead(temporary));
+			return;
+		}
+		if (isSyntactic(node)) return;
+
+		List<AstNode> kids = node.getChildren();
+		int count = node instanceof LogicalNode ? 2 : kids.size();
+		for (int i = node instanceof CallNode ? 1 : 0; i < count; i++) {
+			if (kids.get(i) != null) replaceCopies(node, i, hoisted);
+		}
+	}
+
+	/* isatom looks at how its argument is written rather than at its value */
+	private static boolean isSyntactic(AstNode node) {
+		return node instanceof PredicateNode predicate && "isatom".equals(predicate.getPredicate());
+	}
+
+	private static AtomNode temporaryRead(SetqNode temporary) {
+		return new AtomNode(new Token(TokenType.ATOM, temporary.getName(), 0));
+	}
+
+	/* A computation worth a temporary whose value only depends on names the loop leaves alone */
+	private boolean isInvariant(AstNode node, Set<String> assigned) {
+		return switch (node.getType()) {
+			case OPERATION, COMP, LOGICALOP, NOT, PREDICATE, HEAD, TAIL, CONS, CALL -> dependsOnlyOn(node, assigned);
+			default -> false;
+		};
+	}
+
+	private boolean dependsOnlyOn(AstNode node, Set<String> assigned) {
+		switch (node.getType()) {
+			case LITERAL, QUOTE -> {
+				return true;
+			}
+			case ATOM -> {
+				return !assigned.contains(((AtomNode) node).getValue());
+			}
+			case OPERATION, COMP, NOT, HEAD, TAIL, CONS -> {
+				return node.getChildren().stream().allMatch(child -> dependsOnlyOn(child, assigned));
+			}
+			case LOGICALOP -> {
+				return dependsOnlyOn(node.getChildren().get(0), assigned) && dependsOnlyOn(node.getChildren().get(1), assigned);
+			}
+			case PREDICATE -> {
+				return !isSyntactic(node) && dependsOnlyOn(((PredicateNode) node).getArgument(), assigned);
+			}
+			case CALL -> {
+				CallNode call = (CallNode) node;
+				if (!(call.getCallee() instanceof AtomNode callee) || assigned.contains(callee.getValue())) return false;
+
+				FunctionNode target = unique.get(callee.getValue());
+				if (target == null || effects.effectOf(target) != EffectAnalyzer.Effect.PURE) return false;
+				return call.getArguments().stream().allMatch(arg -> dependsOnlyOn(arg, assigned));
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+}
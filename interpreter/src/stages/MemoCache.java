@@ -0,0 +1,97 @@
+package stages;
+
+import models.nodes.AstNode;
+import models.nodes.FunctionNode;
+import models.nodes.LambdaNode;
+import models.nodes.QuoteNode;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Argument to result cache of a memoized function. Holds at most capacity entries
+ * and evicts the least recently used one when it is full.
+ */
+public final class MemoCache {
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/* Returned by get when the arguments have no cached result yet; null is a valid result */
+	public static final Object MISSING = new Object();
+
+	private final int capacity;
+	private final LinkedHashMap<List<Object>, Object> entries;
+	private long hits;
+	private long misses;
+
+	public MemoCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+				return size() > MemoCache.this.capacity;
+			}
+		};
+	}
+
+	/* args must not be modified after the call, the array backs the key */
+	public synchronized Object get(Object[] args) {
+		List<Object> key = Arrays.asList(args);
+		Object result = entries.getOrDefault(key, MISSING);
+		if (result == MISSING) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	public synchronized void put(Object[] args, Object result) {
+		entries.put(Arrays.asList(args), result);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/* Adds the memoized functions defined anywhere under node to found, nested definitions included */
+	public static void collect(AstNode node, Collection<FunctionNode> found) {
+		if (node == null) return;
+
+		switch (node) {
+			case QuoteNode quote -> {
+			}
+			case FunctionNode fn -> {
+				if (fn.getMemoCache() != null) found.add(fn);
+				collect(fn.getBody(), found);
+			}
+			case LambdaNode lambda -> collect(lambda.getBody(), found);
+			default -> {
+				for (AstNode child : node.getChildren()) collect(child, found);
+			}
+		}
+	}
+
+	public static void printStats(PrintStream out, Collection<FunctionNode> functions) {
+		for (FunctionNode fn : functions) {
+			MemoCache memo = fn.getMemoCache();
+			out.println("Memo cache of " + fn.getFunctionName() + ": " + memo.getHits() + " hits, " +
+					memo.getMisses() + " misses, " + memo.size() + "/" + memo.getCapacity() + " entries");
+		}
+	}
+}
@@ -0,0 +1,6 @@
+package stages;
+
+/* Entry point of a function compiled by the BytecodeCompiler; arguments and result are plain doubles */
+public interface NumericFunction {
+	double apply(double[] args);
+}
@@ -0,0 +1,139 @@
+package stages;
+
+import models.values.FList;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * pmap and preduce on the common ForkJoinPool. The list is halved until the parts are no longer than
+ * SEQUENTIAL_THRESHOLD items, and every part calls the function through a worker of its own whose calls
+ * chain to a fresh child of the caller's table, so what one call defines is not seen by another.
+ * The semantic check only lets through functions that assign nothing outside their own frame, and the
+ * caller waits for all parts, so the tables the calls read do not change while they run.
+ *
+ * preduce also combines the results of the parts with the function, which gives the result of foldl
+ * only for an associative function, so the semantic check only lets it split the list for plus or times.
+ * These saturate to the int range, so a sum or product that leaves it on the way can still differ.
+ */
+final class ParallelLists {
+	static final int SEQUENTIAL_THRESHOLD = 1024;
+
+	private ParallelLists() {
+	}
+
+	/* apply calls the function in the current thread, workers gives a new caller for every part */
+	static Object eval(String operation, Object[] args, BiFunction<Object, Object[], Object> apply,
+					   Supplier<BiFunction<Object, Object[], Object>> workers) {
+		List<?> list = Builtins.asList(operation, args[args.length - 1]);
+		if (list.size() <= SEQUENTIAL_THRESHOLD) {
+			return Builtins.evalListOperation(operation, args, apply);
+		}
+
+		Object[] items = list.toArray();
+		if (operation.equals("pmap")) {
+			Object[] result = new Object[items.length];
+			run(new MapPart(args[0], workers, items, result, 0, items.length));
+			return FList.of(result);
+		}
+
+		Object reduced = run(new ReducePart(args[0], workers, items, 0, items.length));
+		return Builtins.function(args[0], apply).apply(new Object[]{args[1], reduced});
+	}
+
+	/* The functions preduce may apply in any grouping */
+	static boolean isAssociative(Object function) {
+		return function.equals("plus") || function.equals("times");
+	}
+
+	private static <T> T run(ForkJoinTask<T> task) {
+		try {
+			return ForkJoinPool.commonPool().invoke(task);
+		} catch (RuntimeException e) {
+			// errors of other threads come back wrapped in copies of themselves, once per join, report the original
+			RuntimeException original = e;
+			while (original.getCause() instanceof RuntimeException cause && cause.getClass() == original.getClass()) {
+				original = cause;
+			}
+			throw original;
+		}
+	}
+
+	@SuppressWarnings("serial") // tasks are never serialized
+	private static final class MapPart extends RecursiveAction {
+		private final Object function;
+		private final Supplier<BiFunction<Object, Object[], Object>> workers;
+		private final Object[] items;
+		private final Object[] result;
+		private final int from;
+		private final int to;
+
+		MapPart(Object function, Supplier<BiFunction<Object, Object[], Object>> workers,
+				Object[] items, Object[] result, int from, int to) {
+			this.function = function;
+			this.workers = workers;
+			this.items = items;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				Function<Object[], Object> call = Builtins.function(function, workers.get());
+				for (int i = from; i < to; i++) {
+					result[i] = call.apply(new Object[]{items[i]});
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new MapPart(function, workers, items, result, from, middle),
+					new MapPart(function, workers, items, result, middle, to));
+		}
+	}
+
+	/* Reduces a non empty range starting from its first item */
+	@SuppressWarnings("serial") // tasks are never serialized
+	private static final class ReducePart extends RecursiveTask<Object> {
+		private final Object function;
+		private final Supplier<BiFunction<Object, Object[], Object>> workers;
+		private final Object[] items;
+		private final int from;
+		private final int to;
+
+		ReducePart(Object function, Supplier<BiFunction<Object, Object[], Object>> workers,
+				   Object[] items, int from, int to) {
+			this.function = function;
+			this.workers = workers;
+			this.items = items;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Object compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				Function<Object[], Object> call = Builtins.function(function, workers.get());
+				Object accumulator = items[from];
+				for (int i = from + 1; i < to; i++) {
+					accumulator = call.apply(new Object[]{accumulator, items[i]});
+				}
+				return accumulator;
+			}
+
+			int middle = (from + to) >>> 1;
+			ReducePart left = new ReducePart(function, workers, items, from, middle);
+			left.fork();
+			Object right = new ReducePart(function, workers, items, middle, to).compute();
+			return Builtins.function(function, workers.get()).apply(new Object[]{left.join(), right});
+		}
+	}
+}
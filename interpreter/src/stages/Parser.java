@@ -5,20 +5,32 @@ import models.token.*;
 import models.symbol_table.SymbolTable;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 
 public class Parser {
-	private ArrayList<Token> tokens;
-	private int tokenIndex;
+	private TokenSource tokens;
+	private Token lookahead;
 	private SymbolTable localScope;
+	private SymbolTable topLevelScope;
 	private SymbolTable globalScope;
 
 	public Parser(ArrayList<Token> tokens) {
+		this(listSource(tokens));
+	}
+
+	/* Pulls tokens one at a time, e.g. straight from a Lexer, keeping only one token of lookahead */
+	public Parser(TokenSource tokens) {
 		this.tokens = tokens;
-		this.tokenIndex = 0;
 		this.localScope = new SymbolTable(null);
+		this.topLevelScope = localScope;
 		this.globalScope = new SymbolTable(null);
 	}
 
+	private static TokenSource listSource(ArrayList<Token> tokens) {
+		Iterator<Token> iterator = tokens.iterator();
+		return () -> iterator.hasNext() ? iterator.next() : null;
+	}
+
 	public SymbolTable getGlobalScope() {
 		return globalScope;
 	}
@@ -34,21 +46,40 @@ public class Parser {
 		return new ProgNode(instructions);
 	}
 
+	/* Drops the rest of a form that failed to parse, so that parsing can go on from the top level */
+	public void recover() {
+		lookahead = null;
+		localScope = topLevelScope;
+	}
+
+	/* Parses the next top level form on its own, null once the input is exhausted */
+	public AstNode parseNext() throws Exception {
+		if (isAtEnd()) {
+			return null;
+		}
+		return parseNode();
+	}
+
 
 	private Token peek() throws Exception {
 		if (isAtEnd()) {
 			throw new Exception("SYNTAX ERROR: UNEXPECTED END OF INPUT");
 		}
-		return tokens.get(tokenIndex);
+		return lookahead;
 	}
 
-	private boolean isAtEnd() {
-		return tokenIndex >= tokens.size();
+	private boolean isAtEnd() throws Exception {
+		if (lookahead == null) {
+			lookahead = tokens.nextToken();
+		}
+		return lookahead == null;
 	}
 
-	private Token advance() {
+	private Token advance() throws Exception {
 		if (!isAtEnd()) {
-			return tokens.get(tokenIndex++);
+			Token token = lookahead;
+			lookahead = null;
+			return token;
 		}
 		return null;
 	}
@@ -62,12 +93,12 @@ public class Parser {
 		if (isAtEnd()) {
 			throw new Exception("SYNTAX ERROR: UNEXPECTED END OF INPUT, EXPECTED " + expected);
 		}
-		Token token = tokens.get(tokenIndex);
+		Token token = lookahead;
 		if (token.getType() != expected) {
 			throw new Exception("SYNTAX ERROR: EXPECTED " + expected + " BUT FOUND " +
 					token.getValue() + " at line " + token.getLine());
 		}
-		tokenIndex++;
+		lookahead = null;
 		return token;
 	}
 
@@ -122,8 +153,9 @@ public class Parser {
 				 ISINT, ISREAL, ISBOOL, ISNULL, ISATOM, ISLIST,
 				 AND, OR, XOR, NOT,
 				 LESS, LESSEQ, GREATER, GREATEREQ, EQUAL, NONEQUAL,
-				 SETQ, FUNC, LAMBDA, PROG, COND, WHILE, RETURN, BREAK,
+				 SETQ, FUNC, LAMBDA, PROG, COND, WHILE, RETURN, BREAK, MEMO,
 				 HEAD, TAIL, CONS,
+				 MAP, FILTER, FOLDL, LENGTH, NTH, APPEND, REVERSE, PMAP, PREDUCE,
 				 EVAL -> {
 				return new AtomNode(t);
 			}
@@ -168,12 +200,14 @@ public class Parser {
 		return switch (op) {
 			case "setq" -> parseSETQ();
 			case "func" -> parseFUNC();
+			case "memo" -> parseMEMO();
 			case "cond" -> parseCOND();
 			case "prog" -> parsePROG();
 			case "plus", "minus", "times", "divide" -> parseOperation();
 			case "head" -> parseHeadOrTail("head");
 			case "tail" -> parseHeadOrTail("tail");
 			case "cons" -> parseCons();
+			case "map", "filter", "foldl", "length", "nth", "append", "reverse", "pmap", "preduce" -> parseListOperation();
 			case "while" -> parseWHILE();
 			case "return" -> parseRETURN();
 			case "break" -> parseBREAK();
@@ -349,6 +383,37 @@ public class Parser {
 		return fn;
 	}
 
+	/* (memo (func ...)) or (memo <capacity> (func ...)) */
+	private AstNode parseMEMO() throws Exception {
+		advance(); // "memo"
+
+		int capacity = MemoCache.DEFAULT_CAPACITY;
+		if (check(TokenType.INTEGER)) {
+			Token size = advance();
+			try {
+				capacity = Integer.parseInt(size.getValue());
+			} catch (NumberFormatException e) {
+				throw new Exception("SYNTAX ERROR: MEMO CAPACITY " + size.getValue() + " IS TOO LARGE at line: " + size.getLine());
+			}
+			if (capacity <= 0) {
+				throw new Exception("SYNTAX ERROR: MEMO CAPACITY MUST BE POSITIVE at line: " + size.getLine());
+			}
+		}
+
+		consume(TokenType.LPAREN);
+		if (!check(TokenType.FUNC)) {
+			throw new Exception("SYNTAX ERROR: MEMO EXPECTS A FUNCTION DEFINITION at line: " + peek().getLine());
+		}
+		FunctionNode fn = (FunctionNode) parseFUNC();
+		if (isAtEnd()) {
+			throw new Exception("SYNTAX ERROR: MISSING ')' IN MEMO OF FUNCTION " + fn.getFunctionName());
+		}
+		consume(TokenType.RPAREN);
+
+		fn.setMemoCache(new MemoCache(capacity));
+		return fn;
+	}
+
 	private AstNode parseCOND() throws Exception {
 		advance();
 
@@ -414,6 +479,29 @@ public class Parser {
 		return new ConsNode(item, list);
 	}
 
+	private AstNode parseListOperation() throws Exception {
+		Token op = advance(); // map|filter|foldl|length|nth|append|reverse|pmap|preduce
+		ArrayList<AstNode> args = new ArrayList<>();
+
+		while (!isAtEnd() && !check(TokenType.RPAREN)) {
+			args.add(parseNode());
+		}
+
+		if (isAtEnd()) {
+			throw new Exception("SYNTAX ERROR: MISSING ')' AFTER " + op.getValue() + " at line: " + op.getLine());
+		}
+
+		consume(TokenType.RPAREN);
+
+		int arity = ListOpNode.arity(op.getValue());
+		if (args.size() != arity) {
+			throw new Exception("SYNTAX ERROR: " + op.getValue().toUpperCase() + " EXPECTS " + arity +
+					" ARGUMENT(S) at line: " + op.getLine());
+		}
+
+		return new ListOpNode(op.getValue(), args);
+	}
+
 	private AstNode parseWHILE() throws Exception {
 		advance();
 		// while ( <condition> ) <body...>
@@ -0,0 +1,99 @@
+package stages;
+
+import models.nodes.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/*
+ * Assigns frame slots to variables so that the interpreter can address them by index.
+ * Calls chain the callee table to the caller's one, so only names bound in the frame
+ * of the enclosing function (parameters, setq targets and nested funcs) have a static address.
+ * Everything else keeps the name based lookup through the enclosing tables.
+ */
+public class Resolver {
+
+	public String[] resolve(AstNode root) {
+		if (root == null) return new String[0];
+
+		ArrayList<String> locals = new ArrayList<>();
+		collectBindings(root, locals);
+
+		String[] layout = locals.toArray(new String[0]);
+		bind(root, layout);
+		return layout;
+	}
+
+	private String[] resolveFunction(ArrayList<String> params, AstNode body) {
+		String[] layout = null;
+
+		if (new HashSet<>(params).size() == params.size()) {
+			ArrayList<String> locals = new ArrayList<>(params);
+			collectBindings(body, locals);
+			layout = locals.toArray(new String[0]);
+		}
+
+		bind(body, layout);
+		return layout;
+	}
+
+	private void collectBindings(AstNode node, ArrayList<String> locals) {
+		if (node == null) return;
+
+		switch (node) {
+			case SetqNode setq -> {
+				if (!locals.contains(setq.getName())) {
+					locals.add(setq.getName());
+				}
+				collectBindings(setq.getValue(), locals);
+			}
+			case FunctionNode fn -> {
+				if (!locals.contains(fn.getFunctionName())) {
+					locals.add(fn.getFunctionName());
+				}
+			}
+			case LambdaNode ignored -> {
+			}
+			case QuoteNode ignored -> {
+			}
+			default -> {
+				for (AstNode child : node.getChildren()) {
+					collectBindings(child, locals);
+				}
+			}
+		}
+	}
+
+	private void bind(AstNode node, String[] layout) {
+		if (node == null) return;
+
+		switch (node) {
+			case AtomNode atom -> atom.setSlot(slotOf(layout, atom.getValue()));
+			case SetqNode setq -> {
+				setq.setSlot(slotOf(layout, setq.getName()));
+				bind(setq.getValue(), layout);
+			}
+			case FunctionNode fn -> fn.setFrameLayout(resolveFunction(fn.getParameters(), fn.getBody()));
+			case LambdaNode lambda -> lambda.setFrameLayout(resolveFunction(lambda.getParameters(), lambda.getBody()));
+			case QuoteNode ignored -> {
+			}
+			default -> {
+				List<AstNode> kids = node.getChildren();
+				for (AstNode child : kids) {
+					bind(child, layout);
+				}
+			}
+		}
+	}
+
+	private int slotOf(String[] layout, String name) {
+		if (layout == null) return -1;
+		for (int i = 0; i < layout.length; i++) {
+			if (layout[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
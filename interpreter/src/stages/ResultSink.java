@@ -0,0 +1,49 @@
+package stages;
+
+import java.io.PrintStream;
+
+/* Receives the values of the top level forms that get printed */
+public interface ResultSink {
+	void accept(Object result);
+
+	default void flush() {
+	}
+
+	/* Prints every result on its own line as soon as it arrives */
+	static ResultSink printing(PrintStream out) {
+		return new ResultSink() {
+			@Override
+			public void accept(Object result) {
+				out.println(result);
+			}
+
+			@Override
+			public void flush() {
+				out.flush();
+			}
+		};
+	}
+
+	/* Collects the lines and writes them to out in large chunks; nothing shows up until the buffer fills or flush is called */
+	static ResultSink buffered(PrintStream out) {
+		return new ResultSink() {
+			private static final int CAPACITY = 1 << 16;
+			private final StringBuilder buffer = new StringBuilder(CAPACITY);
+
+			@Override
+			public void accept(Object result) {
+				buffer.append(result).append(System.lineSeparator());
+				if (buffer.length() >= CAPACITY) {
+					flush();
+				}
+			}
+
+			@Override
+			public void flush() {
+				out.append(buffer);
+				out.flush();
+				buffer.setLength(0);
+			}
+		};
+	}
+}
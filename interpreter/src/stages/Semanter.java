@@ -2,26 +2,131 @@ package stages;
 
 import models.nodes.*;
 import models.token.*;
+import models.values.FList;
 
+import java.io.PrintStream;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 public class Semanter {
+    private final PrintStream log;
+    private final EffectAnalyzer effects = new EffectAnalyzer();
+    /* quoted lists of the program by value, equal ones are built once and shared */
+    private final Map<FList, FList> quotedLists = new HashMap<>();
+
+    public Semanter() {
+        this(System.out);
+    }
+
+    /* log receives a line for every constant folding that was applied, null turns the logs off */
+    public Semanter(PrintStream log) {
+        this.log = log;
+    }
+
+    /* Effects of the functions validated so far */
+    public EffectAnalyzer getEffectAnalyzer() {
+        return effects;
+    }
 
     public void validate(AstNode root) throws Exception {
         if (root == null) return;
         checkNode(root, new ArrayDeque<>());
     }
 
+    /* Checks a single top level form; reported paths are the same as when the whole program is validated */
+    public void validate(AstNode form, int index) throws Exception {
+        if (form == null) return;
+        Deque<Integer> path = new ArrayDeque<>();
+        path.addLast(index);
+        checkNode(form, path);
+    }
+
     public AstNode optimize(AstNode root) {
         if (root == null) return null;
+        root = new Inliner(effects, log).inline(root);
+        root = new ConstantPropagator(this::constantFold, log).propagate(root);
         root = constantFold(root);
+        root = new LoopInvariantMotion(effects, log).hoist(root);
+        markTailCalls(root);
+        markParallelFunctions(root);
+        materializeQuotes(root);
         return root;
     }
 
+    private void markParallelFunctions(AstNode node) {
+        if (node == null) return;
+
+        if (node instanceof FunctionNode fn) {
+            markParallelFunctions(fn.getBody());
+        } else if (node instanceof LambdaNode lambda) {
+            markParallelFunctions(lambda.getBody());
+        } else if (node.getType() != NodeType.QUOTE) {
+            for (AstNode child : node.getChildren()) {
+                markParallelFunctions(child);
+            }
+            if (node instanceof ListOpNode listOp
+                    && (listOp.getOperation().equals("pmap") || listOp.getOperation().equals("preduce"))) {
+                Object function = parallelFunction(listOp.getArguments().get(0));
+                if (function != null && listOp.getOperation().equals("preduce") && !ParallelLists.isAssociative(function)) {
+                    if (log != null) log.println("Running sequentially, preduce only splits lists for plus and times: " + listOp);
+                    function = null;
+                } else if (log != null) {
+                    log.println(function != null
+                            ? "Successfully parallelized: " + listOp
+                            : "Running sequentially, the function may assign shared variables or is not known: " + listOp);
+                }
+                listOp.setParallelFunction(function);
+            }
+        }
+    }
+
+    /*
+     * The value a pmap or preduce function argument evaluates to when calls to it assign nothing outside
+     * their own frame, null when that cannot be shown. The engines compare it with what the argument
+     * actually evaluates to, so a name bound to something else at run time is called sequentially.
+     */
+    private Object parallelFunction(AstNode function) {
+        if (function instanceof AtomNode atom) {
+            if (Builtins.isOperatorName(atom.getValue())) return atom.getValue();
+
+            FunctionNode fn = effects.lookup(atom.getValue());
+            return fn != null && effects.effectOf(fn) != EffectAnalyzer.Effect.IMPURE ? fn : null;
+        }
+        if (function instanceof LambdaNode lambda) {
+            return effects.effectOf(lambda) != EffectAnalyzer.Effect.IMPURE ? lambda : null;
+        }
+        return null;
+    }
+
+    /* Builds the value of every quote up front; equal lists anywhere in the program become one instance */
+    private void materializeQuotes(AstNode node) {
+        if (node == null) return;
+
+        if (node instanceof QuoteNode quote) {
+            if (quote.getValue() == null) {
+                quote.setValue(Builtins.evalQuoted(quote.getQuotedExpr(), this::shareList));
+            }
+        } else if (node instanceof FunctionNode fn) {
+            materializeQuotes(fn.getBody());
+        } else if (node instanceof LambdaNode lambda) {
+            materializeQuotes(lambda.getBody());
+        } else {
+            for (AstNode child : node.getChildren()) {
+                materializeQuotes(child);
+            }
+        }
+    }
+
+    private FList shareList(FList list) {
+        FList shared = quotedLists.putIfAbsent(list, list);
+        return shared != null ? shared : list;
+    }
+
     private String pathString(Deque<Integer> path) {
         if (path.isEmpty()) return "/";
         StringBuilder sb = new StringBuilder();
@@ -55,12 +160,18 @@ public class Semanter {
             case CONS -> {
                 checkConsNode((ConsNode) node, path);
             }
+            case LISTOP -> {
+                checkListOpNode((ListOpNode) node, path);
+            }
             case WHILE -> {
                 checkWhileNode((WhileNode) node, path);
             }
             case COND -> {
                 checkCondNode((CondNode) node, path);
             }
+            case FUNC -> {
+                checkFunctionNode((FunctionNode) node, path);
+            }
             default -> {
                 List<AstNode> kids = node.getChildren();
                 if (kids != null) {
@@ -218,6 +329,47 @@ public class Semanter {
         path.removeLast();
     }
 
+    private void checkListOpNode(ListOpNode node, Deque<Integer> path) throws Exception {
+        String operation = node.getOperation();
+        List<AstNode> kids = node.getArguments();
+
+        for (int i = 0; i < kids.size(); i++) {
+            path.addLast(i);
+            AstNode arg = kids.get(i);
+
+            checkNode(arg, path);
+
+            // operators take two arguments, only foldl and preduce call the function with two
+            if (i == 0 && ListOpNode.takesFunction(operation) && ListOpNode.arity(operation) != 3 && isOperatorAtom(arg)) {
+                throw new Exception(
+                        "SEMANTIC ERROR: " + operation.toUpperCase() + " CALLS ITS FUNCTION WITH ONE ARGUMENT, got OPERATOR " +
+                                ((AtomNode) arg).getValue() +
+                                " at " + pathString(path)
+                );
+            }
+
+            if (arg.getType() == NodeType.LITERAL) {
+                if (i == 0 && ListOpNode.takesFunction(operation)) {
+                    throw new Exception(
+                            "SEMANTIC ERROR: " + operation.toUpperCase() + " FIRST ARGUMENT MUST BE A FUNCTION, got LITERAL of type " +
+                                    ((LiteralNode) arg).getTokenType() +
+                                    " at " + pathString(path)
+                    );
+                }
+                // the list comes last, append takes two
+                if (i == kids.size() - 1 || operation.equals("append")) {
+                    throw new Exception(
+                            "SEMANTIC ERROR: " + operation.toUpperCase() + " ARGUMENT MUST BE A LIST, got LITERAL of type " +
+                                    ((LiteralNode) arg).getTokenType() +
+                                    " at " + pathString(path)
+                    );
+                }
+            }
+
+            path.removeLast();
+        }
+    }
+
     private void checkWhileNode(WhileNode node, Deque<Integer> path) throws Exception {
         AstNode cond = node.getCondition();
         List<AstNode> body = node.getBody();
@@ -286,6 +438,19 @@ public class Semanter {
         }
     }
 
+    private void checkFunctionNode(FunctionNode node, Deque<Integer> path) throws Exception {
+        effects.define(node);
+
+        if (node.getMemoCache() != null) {
+            String reason = effects.explain(node);
+            if (reason != null) {
+                throw new Exception(
+                        "SEMANTIC ERROR: MEMOIZED FUNCTION " + node.getFunctionName() +
+                                " IS NOT PURE, IT " + reason + " at " + pathString(path)
+                );
+            }
+        }
+    }
 
     private AstNode constantFold(AstNode node) {
         if (node == null) return null;
@@ -293,7 +458,8 @@ public class Semanter {
         List<AstNode> kids = node.getChildren();
         if (kids != null) {
             for (int i = 0; i < kids.size(); i++) {
-                kids.set(i, constantFold(kids.get(i)));
+                AstNode folded = constantFold(kids.get(i));
+                if (folded != kids.get(i)) node.replaceChild(i, folded);
             }
         }
 
@@ -305,10 +471,11 @@ public class Semanter {
             AstNode thenB  = kids.size() >= 2 ? kids.get(1) : null;
             AstNode elseB  = kids.size() >= 3 ? kids.get(2) : null;
 
-            if (Boolean.TRUE.equals(cond) && thenB != null) {
+            // a branch naming an operator evaluates to the operator, a bare atom would be a variable lookup
+            if (Boolean.TRUE.equals(cond) && thenB != null && !isOperatorAtom(thenB)) {
                 optResult = Optional.of(thenB);
             } else if (Boolean.FALSE.equals(cond)) {
-                if (elseB != null) {
+                if (elseB != null && !isOperatorAtom(elseB)) {
                     optResult = Optional.of(elseB);
                 }
             }
@@ -322,17 +489,16 @@ public class Semanter {
 
         // arithmetic
         else if (kind == NodeType.OPERATION && kids != null && kids.size() == 2) {
-            Number L = asNumberLiteral(kids.get(0));
-            Number R = asNumberLiteral(kids.get(1));
-            if (L != null && R != null) {
-                TokenType op = readOperatorType(node);
-                if (op == null) op = mapWordToType(readOperatorWord(node));
-                double l = L.doubleValue(), r = R.doubleValue();
-                if (op == TokenType.PLUS) optResult = Optional.of(makeNumberLiteral(l + r));
-                if (op == TokenType.MINUS) optResult = Optional.of(makeNumberLiteral(l - r));
-                if (op == TokenType.TIMES) optResult = Optional.of(makeNumberLiteral(l * r));
-                if (op == TokenType.DIVIDE) {
-                    if (r != 0.0) optResult = Optional.of(makeNumberLiteral(l / r));
+            Number L = asNumberValue(kids.get(0));
+            Number R = asNumberValue(kids.get(1));
+            TokenType op = readOperatorType(node);
+            if (op == null) op = mapWordToType(readOperatorWord(node));
+            if (L != null && R != null && op != null) {
+                // the runtime arithmetic, so results narrow and saturate the same way; errors are left to run time
+                try {
+                    AstNode folded = makeNumberLiteral(Builtins.evalBinaryOperation(op, L, R));
+                    if (folded != null) optResult = Optional.of(folded);
+                } catch (RuntimeException ignored) {
                 }
             }
         }
@@ -384,13 +550,49 @@ public class Semanter {
         }
 
         if (optResult.isPresent()) {
-            System.out.println("Successfully found optimization for: " + node.toString() + ". Reduced to: " + optResult.get().toString());
+            if (log != null) log.println("Successfully found optimization for: " + node.toString() + ". Reduced to: " + optResult.get().toString());
             return optResult.get();
         }
 
         return node;
     }
 
+    private void markTailCalls(AstNode node) {
+        if (node == null) return;
+
+        if (node instanceof FunctionNode fn) {
+            markTailPosition(fn.getBody(), fn);
+            markTailCalls(fn.getBody());
+        } else if (node instanceof LambdaNode lambda) {
+            markTailCalls(lambda.getBody());
+        } else if (node.getType() != NodeType.QUOTE) {
+            for (AstNode child : node.getChildren()) {
+                markTailCalls(child);
+            }
+        }
+    }
+
+    private void markTailPosition(AstNode node, FunctionNode fn) {
+        if (node == null) return;
+
+        NodeType kind = node.getType();
+        List<AstNode> kids = node.getChildren();
+
+        if (kind == NodeType.PROG && !kids.isEmpty()) {
+            markTailPosition(kids.get(kids.size() - 1), fn);
+        } else if (kind == NodeType.COND) {
+            for (int i = 1; i < kids.size(); i++) {
+                markTailPosition(kids.get(i), fn);
+            }
+        } else if (node instanceof CallNode call
+                && call.getCallee() instanceof AtomNode callee
+                && callee.getValue().equals(fn.getFunctionName())
+                && !fn.getParameters().contains(fn.getFunctionName())
+                && call.getArguments().size() == fn.getParameters().size()) {
+            call.setTailCallOf(fn);
+        }
+    }
+
     private boolean isList(AstNode n) {
         if (n == null) return false;
         NodeType k = n.getType();
@@ -427,6 +629,18 @@ public class Semanter {
         return null;
     }
 
+    private boolean isOperatorAtom(AstNode n) {
+        return n instanceof AtomNode atom && Builtins.isOperatorName(atom.getValue());
+    }
+
+    /* The value a numeric literal has at run time */
+    private Number asNumberValue(AstNode n) {
+        if (n == null || n.getType() != NodeType.LITERAL) return null;
+        LiteralNode lit = (LiteralNode) n;
+        if (lit.getTokenType() != TokenType.INTEGER && lit.getTokenType() != TokenType.REAL) return null;
+        return lit.getRuntimeValue() instanceof Number value ? value : null;
+    }
+
     private Boolean asBoolLiteral(AstNode n) {
         if (n == null || n.getType() != NodeType.LITERAL) return null;
         LiteralNode lit = (LiteralNode) n;
@@ -458,9 +672,10 @@ public class Semanter {
         return makeLiteral(TokenType.BOOLEAN, v ? "true" : "false");
     }
 
-    private AstNode makeNumberLiteral(double v) {
-        if (Math.rint(v) == v) return makeLiteral(TokenType.INTEGER, String.valueOf((long) v));
-        return makeLiteral(TokenType.REAL, String.valueOf(v));
+    private AstNode makeNumberLiteral(Number v) {
+        if (v instanceof Integer) return makeLiteral(TokenType.INTEGER, v.toString());
+        if (v instanceof Double d && Double.isFinite(d)) return makeLiteral(TokenType.REAL, d.toString());
+        return null;
     }
 
     private TokenType readOperatorType(AstNode node) {
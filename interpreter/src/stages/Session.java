@@ -0,0 +1,82 @@
+package stages;
+
+import models.nodes.AstNode;
+import models.nodes.FunctionNode;
+import models.nodes.ProgNode;
+import models.symbol_table.SymbolTable;
+
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Runs source one top level form at a time against state that outlives a single input:
+ * the parser's knowledge of defined names, the global table and compiled functions.
+ */
+public class Session {
+	private final Parser parser;
+	private final Semanter semanter;
+	private final SymbolTable globalTable;
+	private final boolean closures;
+	private final boolean jit;
+	private final PrintStream log;
+	/* memoized functions of every form so far, their counters are logged after each input */
+	private final Set<FunctionNode> memoized = new LinkedHashSet<>();
+	private Lexer lexer;
+	private int formIndex;
+
+	public Session(boolean closures, boolean jit) {
+		this(closures, jit, System.out);
+	}
+
+	/* log receives the optimization logs of the Semanter and the memo counters, null turns them off */
+	public Session(boolean closures, boolean jit, PrintStream log) {
+		this.parser = new Parser(() -> lexer == null ? null : lexer.nextToken());
+		this.semanter = new Semanter(log);
+		this.globalTable = new SymbolTable(parser.getGlobalScope());
+		this.closures = closures;
+		this.jit = jit;
+		this.log = log;
+	}
+
+	/* Evaluates every form of source, printing top level results to out; stops at the first error */
+	public synchronized void eval(Reader source, ResultSink out) throws Exception {
+		lexer = new Lexer(source);
+		try {
+			AstNode form;
+			while ((form = parser.parseNext()) != null) {
+				run(form, out);
+			}
+			if (log != null && !memoized.isEmpty()) {
+				out.flush();
+				MemoCache.printStats(log, memoized);
+			}
+		} catch (Exception e) {
+			// whatever is left of this input is dropped, the next one starts on a clean top level
+			parser.recover();
+			throw e;
+		} finally {
+			lexer = null;
+		}
+	}
+
+	private void run(AstNode form, ResultSink out) throws Exception {
+		semanter.validate(form, formIndex++);
+		ProgNode program = new ProgNode(new ArrayList<>(List.of(semanter.optimize(form))));
+		new Resolver().resolve(program);
+		MemoCache.collect(program, memoized);
+
+		if (jit) {
+			new BytecodeCompiler().compileFunctions(program);
+		}
+
+		if (closures) {
+			new ClosureCompiler(out).compileProgram(program, true).eval(globalTable);
+		} else {
+			program.accept(new Interpreter(globalTable, true, out));
+		}
+	}
+}
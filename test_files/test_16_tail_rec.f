@@ -0,0 +1,34 @@
+(func count_down (num acc)
+    (cond (equal num 0)
+        acc
+        (count_down (minus num 1) (plus acc 1))
+    )
+)
+
+(count_down 100000 0)
+
+(func sum_to (num acc)
+    (cond (greater num 0)
+        (prog ()
+            (setq acc (plus acc num))
+            (sum_to (minus num 1) acc)
+        )
+        acc
+    )
+)
+
+(sum_to 50000 0)
+
+(func fac (num)
+    (func fac_helper (num acc)
+        (cond
+            (equal num 0)
+            acc
+            (fac_helper (minus num 1) (times acc num))
+        )
+    )
+
+    (fac_helper num 1)
+)
+
+(fac 10)
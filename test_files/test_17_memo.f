@@ -0,0 +1,29 @@
+(memo (func fib (num)
+    (cond (lesseq num 1)
+        num
+        (plus (fib (minus num 1)) (fib (minus num 2)))
+    )
+))
+
+(fib 40)
+
+(memo 2 (func square (num)
+    (times num num)
+))
+
+(square 3)
+(square 4)
+(square 3)
+(square 5)
+
+(func inc (num) (plus num 1))
+
+(memo (func add_two (num)
+    (prog (tmp)
+        (setq tmp (inc num))
+        (return (inc tmp))
+    )
+))
+
+(add_two 1)
+(add_two 1)
@@ -0,0 +1,34 @@
+(setq base 100)
+
+(func square (num) (times num num))
+(func add (a b) (plus a b))
+(func sq_sum (x y) (add (square x) (square y)))
+
+(square 7)
+(sq_sum 3 4)
+
+(func swap_sub (a b) (minus b a))
+(func caller (a b) (swap_sub b a))
+
+(caller 10 3)
+
+(func uses_free (k) (plus k base))
+(func local_base (base) (uses_free 1))
+
+(uses_free 1)
+(local_base 5)
+
+(func sum_squares (num acc)
+    (cond (equal num 0)
+        acc
+        (sum_squares (minus num 1) (add acc (square num)))
+    )
+)
+
+(sum_squares 100 0)
+
+(func ia (p) (isatom p))
+
+(ia 5)
+(ia '(1 2))
+(ia 'x)
@@ -0,0 +1,40 @@
+(setq width 6)
+(setq height (plus width 2))
+(times width height)
+
+(setq flag true)
+(cond flag (setq picked 1) (setq picked 2))
+picked
+
+(setq maybe 1)
+(cond (less picked width) (setq maybe 2))
+maybe
+
+(setq counter 0)
+(setq step 3)
+(while (less counter 10) (setq counter (plus counter step)))
+counter
+step
+
+(setq code 5)
+(eval '(plus code 2))
+code
+
+(func scaled (n) (prog (factor unused) (setq factor 10) (setq unused (times n 2)) (return (times n factor))))
+(scaled 4)
+
+(func shadow (n) (prog (width) (setq width 1) (return (plus n width))))
+(shadow 1)
+width
+
+(func reads_width (n) (plus n width))
+(func sets_local (width) (reads_width 1))
+(sets_local 100)
+(setq width 50)
+(reads_width 1)
+
+(func early (n) (prog () (return n) (setq n 0)))
+(early 9)
+
+(setq name 'apple)
+(isatom name)
@@ -0,0 +1,38 @@
+(func tri (n) (cond (equal n 0) 0 (plus n (tri (minus n 1)))))
+
+(func count_to_tri (n) (prog (i) (setq i 0) (while (less i (tri n)) (setq i (plus i 1))) (return i)))
+(count_to_tri 6)
+
+(setq size 4)
+(setq seen 0)
+(setq acc 0)
+(while (less seen (tri size))
+    (setq acc (plus acc (tri size)))
+    (setq seen (plus seen 1))
+)
+acc
+
+(setq shrinking 5)
+(setq steps 0)
+(while (greater (tri shrinking) 3)
+    (setq shrinking (minus shrinking 1))
+    (setq steps (plus steps 1))
+)
+steps
+
+(setq never 0)
+(while (less (tri size) 0) (setq never (divide 1 0)))
+never
+
+(setq k 5)
+(setq i 0)
+(setq s 0)
+(while (less i 10)
+    (setq s (plus s (tri k)))
+    (setq i (plus i 1))
+)
+s
+
+(setq i 0)
+(while (less i 0) (setq never (plus never (divide size 0))))
+never
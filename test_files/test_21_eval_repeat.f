@@ -0,0 +1,23 @@
+(setq x 1)
+(setq expr '(plus x (times 2 x)))
+(eval expr)
+(setq x 5)
+(eval expr)
+
+(func scale (v) (times v 10))
+(setq call '(scale (plus x 1)))
+(eval call)
+(func scale (v) (minus v 1))
+(eval call)
+
+(setq i 0)
+(setq total 0)
+(while (less i 4)
+    (setq total (plus total (eval '(times i i))))
+    (setq i (plus i 1))
+)
+total
+
+(setq data '(cons 1 (2 3)))
+(eval data)
+(eval data)
@@ -0,0 +1,19 @@
+(setq table '((1 2) (3 4) (1 2)))
+(setq other '(0 (1 2) (3 4)))
+
+(setq grown (cons 9 (head table)))
+grown
+table
+(head (tail other))
+
+(func first_row () (head '((1 2) (5 6))))
+(cons 0 (first_row))
+(first_row)
+
+(setq i 0)
+(setq rows '())
+(while (less i 3)
+    (setq rows (cons '(1 2) rows))
+    (setq i (plus i 1))
+)
+rows
@@ -0,0 +1,31 @@
+(func first_over (limit) (prog (n) (setq n 0) (while true (cond (greater (times n n) limit) (return n)) (setq n (plus n 1)))))
+(first_over 50)
+
+(func count_until (stop) (prog (n) (setq n 0) (while (less n 100) (cond (equal n stop) (break)) (setq n (plus n 1))) (return n)))
+(count_until 7)
+
+(setq outer 0)
+(setq inner_total 0)
+(while (less outer 3)
+    (setq inner 0)
+    (while (less inner 10)
+        (cond (equal inner 2) (break))
+        (setq inner (plus inner 1))
+        (setq inner_total (plus inner_total 1))
+    )
+    (setq outer (plus outer 1))
+)
+inner_total
+
+(setq plain 0)
+(setq sum 0)
+(while (less plain 5) (setq sum (plus sum plain)) (setq plain (plus plain 1)))
+sum
+
+(func stop (n) (break))
+(setq hops 0)
+(while true (setq hops (plus hops 1)) (cond (equal hops 3) (stop 0)))
+hops
+
+(func kept (n) (prog (r) (setq r (cond (greater n 0) (return (times n 10)) 0)) r))
+(kept 4)
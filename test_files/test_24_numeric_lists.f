@@ -0,0 +1,22 @@
+(setq ints '(1 2 3 4))
+(setq reals '(1.5 2.5 3.5))
+(setq mixed '(1 2.5 true))
+
+(head (tail ints))
+(tail (tail (tail ints)))
+(cons 0 (tail ints))
+(cons 1.5 (tail reals))
+(islist (tail reals))
+(isint (head ints))
+(isreal (head (tail reals)))
+(plus (head ints) (head (tail (tail ints))))
+(tail mixed)
+
+(setq i 0)
+(setq acc '(0))
+(while (less i 3)
+    (setq acc (cons (head (tail ints)) acc))
+    (setq i (plus i 1))
+)
+acc
+(head (tail (tail (tail (tail ints)))))
@@ -0,0 +1,24 @@
+(setq nums '(1 2 3 4 5))
+
+(func square (x) (times x x))
+(map square nums)
+(map (lambda (x) (plus x 0.5)) nums)
+(filter (lambda (x) (greater x 2)) nums)
+(foldl plus 0 nums)
+(foldl (lambda (acc x) (cons x acc)) '() nums)
+(length nums)
+(length (tail nums))
+(nth 0 nums)
+(nth 4 (map square nums))
+(append '(1 2) nums)
+(append '(a b) '())
+(reverse nums)
+(reverse '(1 true 2.5))
+
+(func sum_squares (xs) (foldl plus 0 (map square xs)))
+(sum_squares nums)
+
+(setq pick '(nth 2 nums))
+(eval pick)
+
+(nth 5 nums)
@@ -0,0 +1,22 @@
+(setq xs '())
+(setq i 0)
+(while (less i 3000)
+    (setq xs (cons i xs))
+    (setq i (plus i 1))
+)
+
+(func square (x) (times x x))
+(length (pmap square xs))
+(nth 0 (pmap square xs))
+(preduce plus 0 xs)
+(preduce plus 0 (pmap (lambda (x) (times x 2)) xs))
+(preduce plus 7 '(1 2 3))
+(preduce plus 0 '())
+(equal (preduce minus 0 xs) (foldl minus 0 xs))
+(equal (preduce (lambda (a x) (plus (times a 2) x)) 0 xs) (foldl (lambda (a x) (plus (times a 2) x)) 0 xs))
+(head (pmap (lambda (x) (prog (y) (setq y (plus x 1)) y)) xs))
+
+(func map_with (f l) (pmap f l))
+(nth 1 (map_with square xs))
+
+(pmap (lambda (x) (divide 1 (minus x 5))) xs)
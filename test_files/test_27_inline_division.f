@@ -0,0 +1,5 @@
+(func first (a b) a)
+
+(first 1 (plus 2 3))
+
+(first 1 (divide 1 0))
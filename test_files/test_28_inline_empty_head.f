@@ -0,0 +1,5 @@
+(func pick (c a b) (cond c a b))
+
+(pick false 1 (head (quote (2 3))))
+
+(pick true 1 (head '()))
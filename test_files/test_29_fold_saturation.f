@@ -0,0 +1,11 @@
+(func big (x) (times x x))
+
+(big 100000)
+
+(times 100000 100000)
+
+(minus 0 (times 100000 100000))
+
+(plus 2147483647 1)
+
+(divide 7 2)
@@ -0,0 +1,10 @@
+(setq q 100000)
+(times q q)
+
+(setq t true)
+((cond t times minus) 2 5)
+((cond (not t) times minus) 2 5)
+
+(func op (b) (cond b plus minus))
+((op true) 3 4)
+((op false) 3 4)
@@ -0,0 +1 @@
+(map minus '(1 2))
@@ -0,0 +1,9 @@
+(func ign (p) 7)
+(func pick (a b) (cond a b 0))
+
+(setq c false)
+(cond c (setq z 1) (setq w 2))
+
+(pick false w)
+
+(ign z)